@@ -2,55 +2,55 @@ import javax.swing.*;
 import java.util.ArrayList;
 
 /**
- * Used for checking BigTwo logic and starting a BigTwo game
- * Implements the CardGame interface
+ * Used for starting a networked BigTwo game with a GUI
+ * Implements the CardGame interface on top of a headless BigTwoEngine:
+ * moves are sent to the server, and the engine's events are shown on the GUI
+ * The GUI is only repainted when the engine or a message from the server
+ * changes what it shows; nothing polls the game
  * @author Yaw Jalik
  */
-public class BigTwo implements CardGame {
-    private final int numOfPlayers;
-    private Deck deck;
-    private ArrayList<CardGamePlayer> playerList;
-    private ArrayList<Hand> handsOnTable;
+public class BigTwo implements CardGame, BigTwoListener {
+    private final BigTwoEngine engine;
     private int currentPlayerIdx;
     private BigTwoGUI ui;
-    private int winner = -1;
-    private boolean running = false;
+    private volatile boolean running = false;
     private BigTwoClient client;
 
     /**
      * Constructor for BigTwo game:
-     * Initialize playerList
-     * Creates 4 players and adds them to playerList
-     * Initialize handsOnTable
+     * Create the engine with 4 players
      * Create BigTwoUI object
      */
     public BigTwo() {
-        // Create 4 players and add to player list
-        numOfPlayers = 4;
-        playerList = new ArrayList<>();
-        for (int i = 0; i < numOfPlayers; i++) {
-            CardGamePlayer player = new CardGamePlayer();
+        // Engine holds the players and the table
+        engine = new BigTwoEngine();
+        for (CardGamePlayer player : engine.getPlayerList()) {
             player.setName("");
-            playerList.add(player);
         }
+        engine.addListener(this);
 
         currentPlayerIdx = -1;
 
-        // Initialize handsOnTable
-        handsOnTable = new ArrayList<>();
-
         // Create BigTwoUI
         ui = new BigTwoGUI(this);
 
         client = ui.getClient();
     }
 
+    /**
+     * Returns the rules engine of the game
+     * @return engine
+     */
+    public BigTwoEngine getEngine() {
+        return engine;
+    }
+
     /**
      * Returns number of players
      * @return number of players
      */
     public int getNumOfPlayers() {
-        return numOfPlayers;
+        return engine.getNumOfPlayers();
     }
 
     /**
@@ -58,7 +58,7 @@ public class BigTwo implements CardGame {
      * @return deck
      */
     public Deck getDeck() {
-        return deck;
+        return engine.getDeck();
     }
 
     /**
@@ -66,7 +66,7 @@ public class BigTwo implements CardGame {
      * @return list of players
      */
     public ArrayList<CardGamePlayer> getPlayerList() {
-        return playerList;
+        return engine.getPlayerList();
     }
 
     /**
@@ -74,12 +74,12 @@ public class BigTwo implements CardGame {
      * @return hands on table
      */
     public ArrayList<Hand> getHandsOnTable() {
-        return handsOnTable;
+        return engine.getHandsOnTable();
     }
 
     /**
-     * Returns the current player's Id
-     * @return current player's Id
+     * Returns the local player's Id
+     * @return local player's Id
      */
     public int getCurrentPlayerIdx() {
         return currentPlayerIdx;
@@ -87,43 +87,17 @@ public class BigTwo implements CardGame {
 
     /**
      * Method for starting the game:
-     * Removes all cards from players and table
-     * Distribute cards to each player and set the active player (the one with 3 of Diamonds)
-     * Prompt active player
+     * Enables the GUI and lets the engine deal the cards
+     * The active player is prompted when the engine reports the start
      * @param deck a shuffled deck of [BigTwo] cards
      */
     public void start(Deck deck) {
-        running = true;
         ui.enable();
 
-        // Remove all cards from all players
-        for (int i = 0; i < numOfPlayers; i++) {
-            playerList.get(i).removeAllCards();
-        }
-
-        // Remove all cards for table
-        handsOnTable.clear();
-
-        // Distribute cards and set active player
-        for (int i = 0; i < numOfPlayers; i++) {
-            for (int j = i * 13; j < (i+1) * 13; j++) {
-                Card card = deck.getCard(j);
-                playerList.get(i).addCard(card);
-
-                if (card.suit == 0 && card.rank == 2) {
-                    ui.setActivePlayer(i);
-                }
-            }
-            // sort hand
-            playerList.get(i).sortCardsInHand();
-        }
-
         currentPlayerIdx = client.getPlayerID();
 
-        // Reset winner
-        winner = -1;
-
-        ui.promptActivePlayer();
+        engine.start(deck);
+        running = true;
     }
 
     /**
@@ -136,69 +110,119 @@ public class BigTwo implements CardGame {
     }
 
     /**
-     * Checks if a move madeby a player is valid:
-     * Create a CardGamePlayer and CardList object from the input parameters
-     * Create a Hand using the composeHand method
-     * Check each move carefully
+     * Checks a move received from the server with the engine
+     * Only used with servers that do not check moves themselves
+     * The outcome is shown through moveMade
      * @param playerIdx player Id passed in from makeMove
      * @param cardIdx array of card Ids passed in from makeMove
      */
     public void checkMove(int playerIdx, int[] cardIdx) {
-        CardGamePlayer player = playerList.get(playerIdx);
-        CardList cards = player.play(cardIdx);
+        engine.playMove(playerIdx, cardIdx);
+    }
 
-        Hand hand = composeHand(player, cards);
+    /**
+     * Applies a move the server has checked, without checking it again
+     * The outcome is shown through moveMade
+     * @param playerIdx player Id
+     * @param move compact form of the move (see MoveResult.toCompactForm), null for a pass
+     */
+    public void applyMove(int playerIdx, int[] move) {
+        engine.applyMove(playerIdx, move);
+    }
 
-        // First move
-        if (handsOnTable.isEmpty()) {
-            if (hand == null || !hand.contains(new Card(0, 2))) {
-                ui.printMsg("Not a legal move!!!\n");
-                return;
-            }
-        }
-        // Pass
-        else if (cards == null) {
-            // Check if last hand was played by the same player
-            if (handsOnTable.get(handsOnTable.size()-1).getPlayer() == player) {
-                ui.printMsg("Not a legal move!!!\n");
-                return;
-            }
-            else {
-                ui.printMsg("{Pass}\n\n");
-                ui.setActivePlayer((ui.getActivePlayer() + 1) % 4);
-                ui.promptActivePlayer();
+    /**
+     * Brings the game up to date after the client got its seat back (see CardGameMessage.RESUME)
+     * With only the seed, deal version and number of moves, the game is still the one
+     * being played and the missed moves follow as RESULT messages; with more, the game
+     * is restored from the snapshot; with nothing, no game is running and the local
+     * player gets ready for the next one
+     * @param state data of the RESUME message
+     */
+    public void resume(long[] state) {
+        if (state.length == 0) {
+            if (running) {
+                ui.printMsg("The game ended while you were away\n");
+                running = false;
+                ui.disable();
             }
+            client.sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
             return;
         }
-        // Illegal hand
-        else if (hand == null) {
-            ui.printMsg("Not a legal move!!!\n");
+        if (state.length == 3) {
             return;
         }
-        // Check if last hand was played by the same player
-        else if (handsOnTable.get(handsOnTable.size()-1).getPlayer() == player) {
-            // Do nothing
-        }
-        // Not the same number of cards
-        else if (handsOnTable.get(handsOnTable.size()-1).size() != hand.size()) {
-            // If not the same player as last hand
-            if (handsOnTable.get(handsOnTable.size()-1).getPlayer() != player) {
-                ui.printMsg("Not a legal move!!!\n");
-                return;
-            }
+
+        int numOfPlayers = getNumOfPlayers();
+        long[] hands = new long[numOfPlayers];
+        System.arraycopy(state, 4, hands, 0, numOfPlayers);
+        int numOfHands = state.length - 4 - numOfPlayers;
+        int[] handPlayers = new int[numOfHands];
+        long[] handCards = new long[numOfHands];
+        for (int i = 0; i < numOfHands; i++) {
+            long hand = state[4 + numOfPlayers + i];
+            handPlayers[i] = (int) (hand >>> 56);
+            handCards[i] = hand & CardSet.FULL_DECK;
         }
-        // If loses
-        else if (handsOnTable.get(handsOnTable.size()-1).beats(hand)){
+
+        ui.enable();
+        currentPlayerIdx = client.getPlayerID();
+        engine.restore(hands, handPlayers, handCards, (int) state[3]);
+        running = true;
+        ui.setActivePlayer(engine.getActivePlayer());
+        ui.promptActivePlayer();
+    }
+
+    /**
+     * Tells the local player that the server rejected their move, and prompts them again
+     */
+    public void rejectMove() {
+        ui.printMsg("Not a legal move!!!\n");
+        ui.promptActivePlayer();
+        ui.repaint();
+    }
+
+    /**
+     * Sets the active player once the cards are dealt and prompts them
+     * @param firstPlayer index of the player holding the 3 of Diamonds
+     */
+    @Override
+    public void gameStarted(int firstPlayer) {
+        ui.setActivePlayer(firstPlayer);
+        ui.promptActivePlayer();
+        ui.repaint();
+    }
+
+    /**
+     * Prints the outcome of a move and prompts the next player
+     * @param result outcome of the move
+     */
+    @Override
+    public void moveMade(MoveResult result) {
+        if (!result.isLegal()) {
             ui.printMsg("Not a legal move!!!\n");
             return;
         }
 
-        handsOnTable.add(hand);
-        player.removeCards(hand);
-        ui.setActivePlayer((ui.getActivePlayer() + 1) % 4);
-
-        ui.printMsg("{" + hand.getType() + "}" + " " + hand + "\n\n");
+        if (result.getType() == MoveResult.PASS) {
+            ui.printMsg("{Pass}\n\n");
+        }
+        else {
+            Hand hand = result.getHand();
+            ui.printMsg("{" + hand.getType() + "}" + " " + hand + "\n\n");
+        }
+        ui.setActivePlayer(engine.getActivePlayer());
         ui.promptActivePlayer();
+        ui.repaint();
+    }
+
+    /**
+     * Ends the game on the event dispatch thread once the winning move is applied,
+     * so the results dialog does not hold up the messages from the server
+     * @param winner index of the winning player
+     */
+    @Override
+    public void gameEnded(int winner) {
+        SwingUtilities.invokeLater(this::endGame);
     }
 
     /**
@@ -206,11 +230,7 @@ public class BigTwo implements CardGame {
      * @return true if one player has no cards, false otherwise
      */
     public boolean endOfGame() {
-        for (int i = 0; i < numOfPlayers; i++) {
-            if (playerList.get(i).getCardsInHand().isEmpty())
-                return true;
-        }
-        return false;
+        return engine.endOfGame();
     }
 
     /**
@@ -219,8 +239,8 @@ public class BigTwo implements CardGame {
     public void endGame() {
         String winningMessage = "";
         ui.printMsg("Game ends\n");
-        for (int i = 0; i < numOfPlayers; i++) {
-            CardGamePlayer player = playerList.get(i);
+        for (int i = 0; i < getNumOfPlayers(); i++) {
+            CardGamePlayer player = getPlayerList().get(i);
             winningMessage += player.getName();
 
             // If player still has cards
@@ -228,7 +248,6 @@ public class BigTwo implements CardGame {
                 winningMessage += " has " + player.getCardsInHand() + " cards in hand.\n";
             }
             else {
-                winner = i;
                 winningMessage += " wins the game!\n";
             }
             ui.disable();
@@ -242,8 +261,7 @@ public class BigTwo implements CardGame {
                 null, winningMessage, "Results", JOptionPane.YES_NO_OPTION,
                 JOptionPane.INFORMATION_MESSAGE, new ImageIcon("icons/icon-small.jpg"));
         if (restart == JOptionPane.YES_OPTION) {
-            winner = -1;
-            client.sendMessage(new CardGameMessage(CardGameMessage.READY, currentPlayerIdx, -1));
+            client.sendMessage(new CardGameMessage(CardGameMessage.READY, currentPlayerIdx, null));
         }
         else
             System.exit(0);
@@ -254,42 +272,17 @@ public class BigTwo implements CardGame {
      * @return id of winner
      */
     public int getWinner(){
-        return winner;
+        return engine.getWinner();
     }
 
     /**
      * Start a BigTwo game:
-     * Create a new game
-     * Create and shuffle a BigTwoDeck
-     * Start the game
+     * Create a new game; the game is dealt when the server starts it, and
+     * ended when the engine reports the winning move (see gameEnded)
      * @param args command line args
      */
     public static void main(String[] args) {
-        BigTwo game = new BigTwo();
-
-        BigTwoDeck deck = new BigTwoDeck();
-        deck.shuffle();
-
-        // Game loop
-        // Added Thread sleep to the while loops because the loops can get too fast and becomes weird
-        while (true) {
-            try {
-                Thread.sleep(100);
-            } catch (Exception ex) { ex.printStackTrace(); }
-            if (game.running) {
-
-                // While game hasn't ended
-                while (!game.endOfGame()) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (Exception ex) { ex.printStackTrace(); }
-                    game.ui.repaint();
-                }
-
-                // Ending
-                game.endGame();
-            }
-        }
+        new BigTwo();
     }
 
     /**
@@ -298,50 +291,9 @@ public class BigTwo implements CardGame {
      * @param player a player object
      * @param cards a list of cards
      * @return valid hand, null otherwise
+     * @see BigTwoEngine#composeHand(CardGamePlayer, CardList)
      */
     public static Hand composeHand(CardGamePlayer player, CardList cards) {
-        if (cards == null)
-            return null;
-
-        Hand h;
-
-        if (cards.size() == 5) {
-            h = new StraightFlush(player, cards);
-            if (h.isValid())
-                return h;
-
-            h = new Quad(player, cards);
-            if (h.isValid())
-                return h;
-
-            h = new FullHouse(player, cards);
-            if (h.isValid())
-                return h;
-
-            h = new Flush(player, cards);
-            if (h.isValid())
-                return h;
-
-            h = new Straight(player, cards);
-            if (h.isValid())
-                return h;
-        }
-        else if (cards.size() == 3) {
-            h = new Triple(player, cards);
-            if (h.isValid())
-                return h;
-        }
-        else if (cards.size() == 2) {
-            h = new Pair(player, cards);
-            if (h.isValid())
-                return h;
-        }
-        else {
-            h = new Single(player, cards);
-            if (h.isValid())
-                return h;
-        }
-
-        return null;
+        return BigTwoEngine.composeHand(player, cards);
     }
 }
@@ -2,22 +2,42 @@ import javax.swing.*;
 import java.io.*;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Timer;
+import java.util.TimerTask;
 
 /**
  * Networking client for BigTwo
  * Connects to the server and sends & receives messages
+ * Asks the server for a session token after joining; when the connection drops,
+ * reconnects with the token to get the seat back, and the game with it
  * @author Yaw Jalik
  */
 public class BigTwoClient implements NetworkGame{
+    // Time between two HEARTBEAT messages, well within the server's idle timeout
+    private static final long HEARTBEAT_INTERVAL = 10000;
+    // How long to keep trying to reconnect, within the server's seat hold timeout
+    private static final long RECONNECT_WINDOW = 60000;
+    private static final long MAX_RECONNECT_DELAY = 5000;
+
     private BigTwo game;
     private BigTwoGUI gui;
     private Socket sock;
-    private ObjectOutputStream oos;
-    private ObjectInputStream ois;
+    private MessageStream stream;
     private int playerID;
     private String playerName;
     private String serverIP = "127.0.0.1";
     private int serverPort = 2396;
+    // Token the server holds the seat for after a lost connection, 0 before it is issued
+    private volatile long sessionToken = 0;
+    // Seed of the game being played, 0 if not known, and RESULT messages applied since its START
+    private long gameSeed = 0;
+    private int resultsSeen = 0;
+    // While resuming, only PLAYER_LIST (kept until the reply) and RESUME are taken
+    private boolean resuming = false;
+    private CardGameMessage pendingPlayerList = null;
+    // Wire format of outgoing messages; -Dbigtwo.codec=java falls back to Java serialization
+    private final MessageCodec.Format format = "java".equalsIgnoreCase(System.getProperty("bigtwo.codec"))
+            ? MessageCodec.Format.JAVA_SERIALIZATION : MessageCodec.Format.BINARY;
 
     /**
      * Constructor for the client
@@ -113,7 +133,9 @@ public class BigTwoClient implements NetworkGame{
 
     /**
      * Method to connect to the BigTwo server
-     * Create object input and output streams and a new message-receiving thread upon connection
+     * Create framed input and output streams and a new message-receiving thread upon connection,
+     * and start sending heartbeats so the server does not take the client for dead while the
+     * player is thinking
      */
     @Override
     public void connect() {
@@ -122,17 +144,85 @@ public class BigTwoClient implements NetworkGame{
             return;
 
         try {
-            sock = new Socket(serverIP, serverPort);
-            oos = new ObjectOutputStream(sock.getOutputStream());
-            ois = new ObjectInputStream(new BufferedInputStream(sock.getInputStream()));
-            Thread receiveThread = new Thread(new ServerHandler());
-            receiveThread.start();
+            open();
         } catch (Exception ex) {
             ex.printStackTrace();
             gui.printMsg("Connection failed\n");
         }
     }
 
+    /**
+     * Opens a connection, and starts the message-receiving thread and the heartbeats
+     * @throws IOException if the server cannot be reached
+     */
+    private void open() throws IOException {
+        Socket socket = new Socket(serverIP, serverPort);
+        socket.setTcpNoDelay(true);
+        MessageStream stream = new MessageStream(socket.getInputStream(), socket.getOutputStream());
+        synchronized (this) {
+            sock = socket;
+            this.stream = stream;
+            if (resuming) {
+                // First message on the connection, ahead of anything the receiving thread triggers
+                stream.write(new CardGameMessage(CardGameMessage.RESUME, -1,
+                        new long[] {sessionToken, gameSeed, resultsSeen}), format);
+            }
+        }
+        Thread receiveThread = new Thread(new ServerHandler(stream));
+        receiveThread.start();
+        startHeartbeat(stream);
+    }
+
+    /**
+     * Reconnects after the connection has dropped and resumes the session,
+     * backing off between attempts for up to RECONNECT_WINDOW milliseconds
+     */
+    private void reconnect() {
+        gui.printMsg("Connection lost, reconnecting...\n");
+        long deadline = System.currentTimeMillis() + RECONNECT_WINDOW;
+        long delay = 250;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            delay = Math.min(delay * 2, MAX_RECONNECT_DELAY);
+            synchronized (this) {
+                resuming = true;
+                pendingPlayerList = null;
+            }
+            try {
+                open();
+                return;
+            } catch (IOException ex) {
+                synchronized (this) {
+                    resuming = false;
+                }
+            }
+        }
+        gui.printMsg("Could not reconnect\n");
+    }
+
+    /**
+     * Sends a HEARTBEAT message every HEARTBEAT_INTERVAL milliseconds until the connection fails
+     * Writes to the stream directly, so a heartbeat never waits for a message being parsed
+     * @param stream stream of the connection
+     */
+    private void startHeartbeat(MessageStream stream) {
+        Timer heartbeat = new Timer("heartbeat", true);
+        heartbeat.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    stream.write(new CardGameMessage(CardGameMessage.HEARTBEAT, -1, null), format);
+                } catch (IOException ex) {
+                    heartbeat.cancel();
+                }
+            }
+        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL);
+    }
+
     /**
      * Method for parsing messages received from the server
      * Behavior depends on message type
@@ -144,22 +234,53 @@ public class BigTwoClient implements NetworkGame{
         int id =  message.getPlayerID();
         Object data = message.getData();
 
+        // Messages of the table the new connection was seated at before the seat is given back
+        if (resuming && type != CardGameMessage.PLAYER_LIST && type != CardGameMessage.RESUME)
+            return;
+
         switch (type) {
             case CardGameMessage.PLAYER_LIST:
-                playerID = id;
-                gui.setActivePlayer(playerID);
-                game.getPlayerList().get(playerID).setName(playerName);
-                String[] names = (String[]) data;
-                for (int i = 0; i < game.getNumOfPlayers(); i++)
-                    if (i != id)
-                        game.getPlayerList().get(i).setName(names[i] == null ? "" : names[i]);
+                if (resuming) {
+                    pendingPlayerList = (CardGameMessage) message;
+                    break;
+                }
+                setPlayerList(id, (String[]) data);
                 sendMessage(new CardGameMessage(CardGameMessage.JOIN, -1, playerName));
+                sendMessage(new CardGameMessage(CardGameMessage.SESSION, -1, null));
+                if (message instanceof CardGameMessage)
+                    gui.printMsg("Joined table " + ((CardGameMessage) message).getTableID() + "\n");
                 gui.enableChat();
                 gui.repaint();
                 break;
 
+            case CardGameMessage.SESSION:
+                sessionToken = ((long[]) data)[0];
+                break;
+
+            case CardGameMessage.RESUME:
+                resuming = false;
+                if (data == null) {
+                    // Session expired: the next PLAYER_LIST joins as a new player
+                    sessionToken = 0;
+                    pendingPlayerList = null;
+                    gui.printMsg("Could not get the seat back\n");
+                    break;
+                }
+                setPlayerList(id, (String[]) pendingPlayerList.getData());
+                pendingPlayerList = null;
+                long[] state = (long[]) data;
+                gui.printMsg("Reconnected to table " + ((CardGameMessage) message).getTableID() + "\n");
+                if (state.length > 3) {
+                    gameSeed = state[0];
+                    resultsSeen = (int) Math.max(0, state[2]);
+                }
+                game.resume(state);
+                gui.repaint();
+                break;
+
             case CardGameMessage.JOIN:
                 game.getPlayerList().get(id).setName((String) data);
+                gui.repaint();
                 if (id == playerID)
                     sendMessage(new CardGameMessage(CardGameMessage.READY, playerID, null));
                 break;
@@ -173,6 +294,7 @@ public class BigTwoClient implements NetworkGame{
                 CardGamePlayer player = game.getPlayerList().get(id);
                 gui.printMsg(player.getName() + " left the game\n");
                 player.setName("");
+                gui.repaint();
                 sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
                 break;
 
@@ -181,13 +303,36 @@ public class BigTwoClient implements NetworkGame{
                 break;
 
             case CardGameMessage.START:
-                game.start((BigTwoDeck) data);
+                resultsSeen = 0;
+                if (data instanceof Deck) {
+                    gameSeed = 0;
+                    game.start((BigTwoDeck) data);
+                    break;
+                }
+                long[] deal = (long[]) data;
+                if (deal[1] != Deck.DEAL_VERSION) {
+                    gui.printMsg("Cannot deal: unknown deal version " + deal[1] + "\n");
+                    break;
+                }
+                BigTwoDeck deck = new BigTwoDeck();
+                deck.shuffle(deal[0]);
+                gameSeed = deal[0];
+                game.start(deck);
                 break;
 
             case CardGameMessage.MOVE:
                 game.checkMove(id, (int[]) data);
                 break;
 
+            case CardGameMessage.RESULT:
+                resultsSeen++;
+                game.applyMove(id, (int[]) data);
+                break;
+
+            case CardGameMessage.REJECT:
+                game.rejectMove();
+                break;
+
             case CardGameMessage.MSG:
                 if (data != null)
                     gui.printChat(data + "\n");
@@ -196,13 +341,27 @@ public class BigTwoClient implements NetworkGame{
     }
 
     /**
-     * Method for sending a message to the server
+     * Sets the local player's seat and the names of the others from a player list
+     * @param id seat of the local player
+     * @param names names of the players, null for free seats
+     */
+    private void setPlayerList(int id, String[] names) {
+        playerID = id;
+        gui.setActivePlayer(playerID);
+        game.getPlayerList().get(playerID).setName(playerName);
+        for (int i = 0; i < game.getNumOfPlayers(); i++)
+            if (i != id)
+                game.getPlayerList().get(i).setName(names[i] == null ? "" : names[i]);
+    }
+
+    /**
+     * Method for sending a message to the server as one length-prefixed frame
      * @param message message to be sent
      */
     @Override
     public synchronized void sendMessage(GameMessage message) {
         try {
-            oos.writeObject(message);
+            stream.write((CardGameMessage) message, format);
         } catch (Exception ex) { ex.printStackTrace(); }
     }
 
@@ -212,17 +371,25 @@ public class BigTwoClient implements NetworkGame{
      * @author Yaw Jalik
      */
     class ServerHandler implements Runnable {
+        private final MessageStream stream;
+
+        ServerHandler(MessageStream stream) {
+            this.stream = stream;
+        }
+
         @Override
         public void run() {
             try {
-                CardGameMessage message = (CardGameMessage) ois.readObject();
+                CardGameMessage message = stream.read();
                 while (message != null) {
                     parseMessage(message);
-                    message = (CardGameMessage) ois.readObject();
+                    message = stream.read();
                 }
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
+            if (sessionToken != 0)
+                reconnect();
         }
     }
 }
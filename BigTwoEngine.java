@@ -0,0 +1,405 @@
+import java.util.ArrayList;
+
+/**
+ * Headless BigTwo rules engine
+ * Holds the players, the hands on the table and the turn, checks moves and
+ * reports the outcome as MoveResult objects and events to BigTwoListeners
+ * Has no dependency on Swing or the network, so it can run in servers and simulations
+ * @author Yaw Jalik
+ */
+public class BigTwoEngine implements CardGame {
+    private final int numOfPlayers;
+    private Deck deck;
+    private final ArrayList<CardGamePlayer> playerList;
+    private final ArrayList<Hand> handsOnTable;
+    private final ArrayList<BigTwoListener> listeners;
+    private int activePlayer = -1;
+    private int winner = -1;
+
+    /**
+     * Constructor for a 4-player engine
+     */
+    public BigTwoEngine() {
+        numOfPlayers = 4;
+        playerList = new ArrayList<>();
+        for (int i = 0; i < numOfPlayers; i++) {
+            playerList.add(new CardGamePlayer());
+        }
+        handsOnTable = new ArrayList<>();
+        listeners = new ArrayList<>();
+    }
+
+    /**
+     * Registers a listener for game events
+     * @param listener listener to be added
+     */
+    public void addListener(BigTwoListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener
+     * @param listener listener to be removed
+     */
+    public void removeListener(BigTwoListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns number of players
+     * @return number of players
+     */
+    @Override
+    public int getNumOfPlayers() {
+        return numOfPlayers;
+    }
+
+    /**
+     * Returns the deck of the current game
+     * @return deck, or null before the first game
+     */
+    @Override
+    public Deck getDeck() {
+        return deck;
+    }
+
+    /**
+     * Returns the list of players
+     * @return list of players
+     */
+    @Override
+    public ArrayList<CardGamePlayer> getPlayerList() {
+        return playerList;
+    }
+
+    /**
+     * Returns hands on table
+     * @return hands on table
+     */
+    @Override
+    public ArrayList<Hand> getHandsOnTable() {
+        return handsOnTable;
+    }
+
+    /**
+     * Returns the last hand on the table
+     * @return last hand, or null if no hand has been played this game
+     */
+    public Hand getLastHand() {
+        return handsOnTable.isEmpty() ? null : handsOnTable.get(handsOnTable.size()-1);
+    }
+
+    /**
+     * Returns the index of the player whose turn it is
+     * @return index of the active player, -1 before the first game
+     */
+    @Override
+    public int getCurrentPlayerIdx() {
+        return activePlayer;
+    }
+
+    /**
+     * Returns the index of the player whose turn it is
+     * @return index of the active player, -1 before the first game
+     */
+    public int getActivePlayer() {
+        return activePlayer;
+    }
+
+    /**
+     * Return the id of the winner
+     * @return id of winner, -1 while the game is running
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Starts a game:
+     * Removes all cards from players and table
+     * Distributes 13 cards to each player, sorts the hands and sets the active
+     * player (the one with the 3 of Diamonds)
+     * @param deck a shuffled deck of [BigTwo] cards
+     */
+    @Override
+    public void start(Deck deck) {
+        this.deck = deck;
+
+        // Remove all cards from players and table
+        for (int i = 0; i < numOfPlayers; i++) {
+            playerList.get(i).removeAllCards();
+        }
+        handsOnTable.clear();
+
+        // Distribute cards and set active player
+        for (int i = 0; i < numOfPlayers; i++) {
+            CardGamePlayer player = playerList.get(i);
+            for (int j = i * 13; j < (i+1) * 13; j++) {
+                player.addCard(deck.getCard(j));
+            }
+            player.sortCardsInHand();
+
+            if ((player.getCardSet() & CardSet.THREE_OF_DIAMONDS) != 0) {
+                activePlayer = i;
+            }
+        }
+
+        winner = -1;
+
+        for (BigTwoListener listener : listeners) {
+            listener.gameStarted(activePlayer);
+        }
+    }
+
+    /**
+     * Restores a game in progress, e.g. from a TableSnapshot after a restart
+     * Sets the cards of every player, the hands on the table and the active
+     * player; no listener is notified
+     * @param hands CardSet bit mask of the cards of each player
+     * @param handPlayers player of each hand on the table, oldest first
+     * @param handCards CardSet bit mask of each hand on the table
+     * @param activePlayer the player whose turn it is
+     */
+    public void restore(long[] hands, int[] handPlayers, long[] handCards, int activePlayer) {
+        deck = null;
+        for (int i = 0; i < numOfPlayers; i++) {
+            CardGamePlayer player = playerList.get(i);
+            player.removeAllCards();
+            for (long s = hands[i]; s != 0; s &= s - 1) {
+                player.addCard(CardSet.card(Long.numberOfTrailingZeros(s)));
+            }
+            player.sortCardsInHand();
+        }
+
+        handsOnTable.clear();
+        for (int i = 0; i < handCards.length; i++) {
+            int category = HandClassifier.category(HandClassifier.classify(handCards[i]));
+            handsOnTable.add(newHand(playerList.get(handPlayers[i]), CardSet.toCardList(handCards[i]), category));
+        }
+
+        this.activePlayer = activePlayer;
+        winner = -1;
+    }
+
+    /**
+     * Makes a move; same as checkMove as there is nothing to send anywhere
+     * @param playerIdx player Id
+     * @param cardIdx array of card Ids, null to pass
+     */
+    @Override
+    public void makeMove(int playerIdx, int[] cardIdx) {
+        playMove(playerIdx, cardIdx);
+    }
+
+    /**
+     * Checks a move and applies it if it is legal
+     * @param playerIdx player Id
+     * @param cardIdx array of card Ids, null to pass
+     */
+    @Override
+    public void checkMove(int playerIdx, int[] cardIdx) {
+        playMove(playerIdx, cardIdx);
+    }
+
+    /**
+     * Checks a move, applies it if it is legal and notifies the listeners
+     * @param playerIdx player Id
+     * @param cardIdx array of card Ids, null to pass
+     * @return outcome of the move
+     */
+    public MoveResult playMove(int playerIdx, int[] cardIdx) {
+        CardGamePlayer player = playerList.get(playerIdx);
+        CardList cards = player.play(cardIdx);
+        Hand lastHand = getLastHand();
+        MoveResult result;
+
+        // Game over or not this player's turn
+        if (winner != -1 || playerIdx != activePlayer) {
+            result = new MoveResult(MoveResult.ILLEGAL, playerIdx, null);
+        }
+        // Pass: not allowed on the first move or when the player's own hand is on top
+        else if (cards == null) {
+            if (lastHand == null || lastHand.getPlayer() == player) {
+                result = new MoveResult(MoveResult.ILLEGAL, playerIdx, null);
+            }
+            else {
+                result = pass(playerIdx);
+            }
+        }
+        else {
+            Hand hand = composeHand(player, cards);
+            if (!isLegal(player, hand, lastHand)) {
+                result = new MoveResult(MoveResult.ILLEGAL, playerIdx, null);
+            }
+            else {
+                result = put(playerIdx, hand);
+            }
+        }
+
+        notifyListeners(result);
+        return result;
+    }
+
+    /**
+     * Applies a move already checked by another engine (the server's), without
+     * checking the rules again, and notifies the listeners
+     * @param playerIdx player Id
+     * @param move compact form of the move (see MoveResult.toCompactForm), null for a pass
+     * @return outcome of the move
+     */
+    public MoveResult applyMove(int playerIdx, int[] move) {
+        MoveResult result;
+        if (move == null) {
+            result = pass(playerIdx);
+        }
+        else {
+            CardList cards = new CardList();
+            for (int i = 1; i < move.length; i++) {
+                cards.addCard(CardSet.card(move[i]));
+            }
+            result = put(playerIdx, newHand(playerList.get(playerIdx), cards, move[0]));
+        }
+
+        notifyListeners(result);
+        return result;
+    }
+
+    /**
+     * Passes the turn on from a player
+     */
+    private MoveResult pass(int playerIdx) {
+        activePlayer = (playerIdx + 1) % numOfPlayers;
+        return new MoveResult(MoveResult.PASS, playerIdx, null);
+    }
+
+    /**
+     * Puts a player's hand on the table and passes the turn on, unless the
+     * player has no cards left and wins
+     */
+    private MoveResult put(int playerIdx, Hand hand) {
+        CardGamePlayer player = playerList.get(playerIdx);
+        handsOnTable.add(hand);
+        player.removeCards(hand);
+        if (player.getNumOfCards() == 0) {
+            winner = playerIdx;
+        }
+        else {
+            activePlayer = (playerIdx + 1) % numOfPlayers;
+        }
+        return new MoveResult(MoveResult.PLAYED, playerIdx, hand);
+    }
+
+    /**
+     * Reports a move to the listeners, and the end of the game after a winning hand
+     */
+    private void notifyListeners(MoveResult result) {
+        for (BigTwoListener listener : listeners) {
+            listener.moveMade(result);
+        }
+        if (winner != -1 && result.getType() == MoveResult.PLAYED) {
+            for (BigTwoListener listener : listeners) {
+                listener.gameEnded(winner);
+            }
+        }
+    }
+
+    /**
+     * Returns the move made for the active player when they run out of time:
+     * a pass when passing is allowed, otherwise their lowest single, which is
+     * always legal when leading (and is the 3 of Diamonds on the first move)
+     * @return array of card Ids, null to pass
+     */
+    public int[] getTimeoutMove() {
+        CardGamePlayer player = playerList.get(activePlayer);
+        Hand lastHand = getLastHand();
+        if (lastHand != null && lastHand.getPlayer() != player) {
+            return null;
+        }
+        long hand = player.getCardSet();
+        return LegalMoveGenerator.toCardIdx(player.getCardsInHand(), hand & -hand);
+    }
+
+    /**
+     * Check if game has ended: if one player has no cards left
+     * @return true if one player has no cards, false otherwise
+     */
+    @Override
+    public boolean endOfGame() {
+        return winner != -1;
+    }
+
+    /**
+     * Checks a hand against the rules
+     * @param player player of the hand
+     * @param hand hand to be played, null if the cards are not a valid hand
+     * @param lastHand last hand on the table, null on the first move
+     * @return true if the hand may be played, false otherwise
+     */
+    private static boolean isLegal(CardGamePlayer player, Hand hand, Hand lastHand) {
+        if (hand == null) {
+            return false;
+        }
+        // First move must include the 3 of Diamonds
+        if (lastHand == null) {
+            return (hand.getCardSet() & CardSet.THREE_OF_DIAMONDS) != 0;
+        }
+        // Player leads freely if everyone else passed on their hand
+        if (lastHand.getPlayer() == player) {
+            return true;
+        }
+        return lastHand.size() == hand.size() && hand.beats(lastHand);
+    }
+
+    /**
+     * Returns a valid hand from a player and a list of cards
+     * Otherwise returns null
+     * The cards are classified with a single table lookup, and the Hand object
+     * is only created once its type is known
+     * @param player a player object
+     * @param cards a list of cards
+     * @return valid hand, null otherwise
+     */
+    public static Hand composeHand(CardGamePlayer player, CardList cards) {
+        if (cards == null)
+            return null;
+
+        // Duplicate cards collapse in the card set and never form a hand
+        long set = cards.getCardSet();
+        if (CardSet.size(set) != cards.size())
+            return null;
+
+        int strength = HandClassifier.classify(set);
+        if (strength == HandClassifier.INVALID)
+            return null;
+
+        return newHand(player, cards, HandClassifier.category(strength));
+    }
+
+    /**
+     * Creates the Hand object of a hand category
+     * @param player a player object
+     * @param cards the cards of the hand
+     * @param category HandClassifier category of the cards
+     * @return hand of the given category
+     */
+    private static Hand newHand(CardGamePlayer player, CardList cards, int category) {
+        switch (category) {
+            case HandClassifier.SINGLE:
+                return new Single(player, cards);
+            case HandClassifier.PAIR:
+                return new Pair(player, cards);
+            case HandClassifier.TRIPLE:
+                return new Triple(player, cards);
+            case HandClassifier.STRAIGHT:
+                return new Straight(player, cards);
+            case HandClassifier.FLUSH:
+                return new Flush(player, cards);
+            case HandClassifier.FULL_HOUSE:
+                return new FullHouse(player, cards);
+            case HandClassifier.QUAD:
+                return new Quad(player, cards);
+            default:
+                return new StraightFlush(player, cards);
+        }
+    }
+}
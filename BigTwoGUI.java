@@ -144,7 +144,9 @@ public class BigTwoGUI implements CardGameUI{
 
     /**
      * Method to repaint the UI
-     * Calls the repaint() function of bigTwoPanel
+     * Calls the repaint() function of bigTwoPanel, which may be called from any
+     * thread: the repaint manager merges all requests made before the next
+     * paint on the event dispatch thread into one
      */
     @Override
     public void repaint() {
@@ -193,7 +195,7 @@ public class BigTwoGUI implements CardGameUI{
      */
     @Override
     public void reset() {
-        Arrays.fill(selected, false);
+        resetSelected();
         clearMsgArea();
         clearChatArea();
         enable();
@@ -322,60 +324,7 @@ public class BigTwoGUI implements CardGameUI{
      */
     private void resetSelected() {
         Arrays.fill(selected, false);
-    }
-
-    /**
-     * Parse the int rank to a char
-     * Used to access card image file name
-     * @param cardRank card rank
-     * @return char equivalent of card rank
-     */
-    private char parseRank(int cardRank) {
-        char imgRank;
-        switch (cardRank) {
-            case 0:
-                imgRank = 'a';
-                break;
-            case 9:
-                imgRank = 't';
-                break;
-            case 10:
-                imgRank = 'j';
-                break;
-            case 11:
-                imgRank = 'q';
-                break;
-            case 12:
-                imgRank = 'k';
-                break;
-            default:
-                imgRank = (char) (cardRank + 1 + '0');
-        }
-        return imgRank;
-    }
-
-    /**
-     * Parse the int suit to a char
-     * Used to access card image file name
-     * @param cardSuit card suit
-     * @return char equivalent of card suit
-     */
-    private char parseSuit(int cardSuit) {
-        char imgSuit;
-        switch (cardSuit) {
-            case 0:
-                imgSuit = 'd';
-                break;
-            case 1:
-                imgSuit = 'c';
-                break;
-            case 2:
-                imgSuit = 'h';
-                break;
-            default:
-                imgSuit = 's';
-        }
-        return imgSuit;
+        repaint();
     }
 
     /**
@@ -384,15 +333,24 @@ public class BigTwoGUI implements CardGameUI{
      * @author Yaw Jalik
      */
     class BigTwoPanel extends JPanel implements MouseListener {
-        private final Image backCard = new ImageIcon("cards/b.gif").getImage();
+        private final GameAssets assets = GameAssets.load(".", 4);
+        // Labels drawn next to the avatars, rebuilt only when a name changes
+        private final String[] labelNames = new String[4];
+        private final String[] nameLabels = new String[4];
+        private final String[] winLabels = new String[4];
+        private CardGamePlayer lastHandPlayer;
+        private String lastHandName;
+        private String playedByLabel;
 
         /**
          * Constructor for the panel
-         * Adds mouselistener and initializes the selected array
+         * Adds mouselistener, initializes the selected array and starts the
+         * timer that animates the avatars
          */
         public BigTwoPanel() {
             this.addMouseListener(this);
             selected = new boolean[13];
+            new Timer(assets.getAvatarFrameDelay(), e -> repaint(0, 0, assets.getAvatarWidth(), getHeight())).start();
         }
 
         /**
@@ -402,8 +360,7 @@ public class BigTwoGUI implements CardGameUI{
          */
         @Override
         protected void paintComponent(Graphics g) {
-            Image background = new ImageIcon("backgrounds/background.png").getImage();
-            g.drawImage(background, 0, 0, this);
+            assets.drawBackground(g, getWidth(), getHeight());
 
             g.setColor(Color.WHITE);
             for (int i = height / 5; i <= height; i += height / 5) {
@@ -416,6 +373,11 @@ public class BigTwoGUI implements CardGameUI{
             for (int i = 0; i < 4; i++) {
                 CardGamePlayer player = players.get(i);
                 String playerName = player.getName();
+                if (!playerName.equals(labelNames[i])) {
+                    labelNames[i] = playerName;
+                    nameLabels[i] = playerName + ":";
+                    winLabels[i] = playerName + " Wins!";
+                }
                 if (i == activePlayer) {
                     g.setColor(bgLight);
                     g.fillRect(0, i*height/5, width * 2, height/5);
@@ -431,61 +393,48 @@ public class BigTwoGUI implements CardGameUI{
                 }
                 else {
                     g.setColor(bgPrimary);
-                    g.drawString(playerName + ":", 9, 20 + i * height / 5);
+                    g.drawString(nameLabels[i], 9, 20 + i * height / 5);
                     g.setColor(Color.ORANGE);
-                    g.drawString(playerName+ ":", 10, 18 + i * height / 5);
+                    g.drawString(nameLabels[i], 10, 18 + i * height / 5);
                 }
 
-                Image avatar;
+                int avatar;
                 if (game.getWinner() == i) {
-                    avatar = new ImageIcon("avatars/0" + (i+1) + "_win.gif").getImage();
+                    avatar = GameAssets.AVATAR_WIN;
                     g.setFont(fontLarge);
                     g.setColor(Color.BLACK);
-                    g.drawString(playerName + " Wins!", width/3-2, i*height/5 + height/10 + 18);
+                    g.drawString(winLabels[i], width/3-2, i*height/5 + height/10 + 18);
                     g.setColor(Color.YELLOW);
-                    g.drawString(playerName + " Wins!", width/3, i*height/5 + height/10 + 16);
+                    g.drawString(winLabels[i], width/3, i*height/5 + height/10 + 16);
                     g.setFont(fontMedium);
                 }
                 else if (game.getWinner() != -1){
-                    avatar = new ImageIcon("avatars/0" + (i+1) + "_lose.gif").getImage();
+                    avatar = GameAssets.AVATAR_LOSE;
                 }
                 else {
-                    avatar = new ImageIcon("avatars/0" + (i+1) + ".gif").getImage();
+                    avatar = GameAssets.AVATAR_PLAYING;
                 }
 
-                int avatarHeight = avatar.getHeight(this);
-
                 if (!player.getName().equals(""))
-                    g.drawImage(avatar, 0, (i+1) * height/5 - avatarHeight, this);
+                    assets.drawAvatar(g, i, avatar, 0, (i+1) * height/5);
             }
 
             // Draw cards
+            int cardHeight = assets.getCardHeight();
             for (int i = 0; i < 4; i++) {
                 CardList cardList = players.get(i).getCardsInHand();
                 if (i == game.getCurrentPlayerIdx()) {
                     for (int j = 0; j < cardList.size(); j++) {
-                        Card card = cardList.getCard(j);
-                        int cardRank = card.getRank();
-                        int cardSuit = card.getSuit();
-                        char imgRank, imgSuit;
-
-                        // Parse rank and suit
-                        imgRank = parseRank(cardRank);
-                        imgSuit = parseSuit(cardSuit);
-
-                        Image cardImg = new ImageIcon("cards/" + imgRank + imgSuit + ".gif").getImage();
-                        int cardHeight = cardImg.getHeight(this);
                         int x = 130+(j*15);
                         int y = selected[j] ? i*height/5 : (i+1)*height/5-cardHeight;
-                        g.drawImage(cardImg, x, y, this);
+                        assets.drawCard(g, cardList.getCard(j), x, y);
                     }
                 }
                 else {
                     for (int j = 0; j < cardList.size(); j++) {
-                        int cardHeight = backCard.getHeight(this);
                         int x = 130+(j*15);
                         int y = (i+1)*height/5-cardHeight;
-                        g.drawImage(backCard, x, y, this);
+                        assets.drawBack(g, x, y);
                     }
                 }
             }
@@ -495,11 +444,15 @@ public class BigTwoGUI implements CardGameUI{
             if (handsOnTable != null && handsOnTable.size() > 0) {
                 Hand lastHand = handsOnTable.get(handsOnTable.size()-1);
                 for (int i = 0; i < lastHand.size(); i++) {
-                    Card card = lastHand.getCard(i);
-                    Image cardImg = new ImageIcon("cards/" + parseRank(card.getRank()) + parseSuit(card.getSuit()) + ".gif").getImage();
-                    g.drawImage(cardImg, 130+(i*15), height-cardImg.getHeight(this), this);
+                    assets.drawCard(g, lastHand.getCard(i), 130+(i*15), height-cardHeight);
+                }
+                CardGamePlayer player = lastHand.getPlayer();
+                if (player != lastHandPlayer || !player.getName().equals(lastHandName)) {
+                    lastHandPlayer = player;
+                    lastHandName = player.getName();
+                    playedByLabel = "Played by " + lastHandName;
                 }
-                g.drawString("Played by " + lastHand.getPlayer().getName(), 10, 20 + 4*height/5);
+                g.drawString(playedByLabel, 10, 20 + 4*height/5);
             }
 
         }
@@ -530,7 +483,8 @@ public class BigTwoGUI implements CardGameUI{
 
             CardList cardList = game.getPlayerList().get(activePlayer).getCardsInHand();
             int size = cardList.size();
-            int cardHeight = backCard.getHeight(this);
+            int cardHeight = assets.getCardHeight();
+            int cardWidth = assets.getCardWidth();
 
             // check overlapped cards
             for (int j = 0; j < size-1; j++) {
@@ -550,13 +504,13 @@ public class BigTwoGUI implements CardGameUI{
 
             // check last card
             if (selected[size-1]) {
-                if (selectedX >= 130+(size-1)*15 && selectedX < 130+(size-1)*15+backCard.getWidth(this) &&
+                if (selectedX >= 130+(size-1)*15 && selectedX < 130+(size-1)*15+cardWidth &&
                         selectedY >= (activePlayer)*height/5 && selectedY < (activePlayer+1)*height/5) {
                     selected[size-1] = !selected[size-1];
                 }
             }
             else {
-                if (selectedX >= 130+(size-1)*15 && selectedX < 130+(size-1)*15+backCard.getWidth(this) &&
+                if (selectedX >= 130+(size-1)*15 && selectedX < 130+(size-1)*15+cardWidth &&
                         selectedY >= (activePlayer+1)*height/5-cardHeight && selectedY < (activePlayer+1)*height/5) {
                     selected[size-1] = !selected[size-1];
                 }
@@ -0,0 +1,24 @@
+/**
+ * Listener for the events of a BigTwoEngine
+ * Implemented by user interfaces and servers that need to follow a game
+ * @author Yaw Jalik
+ */
+public interface BigTwoListener {
+    /**
+     * Called after the cards have been dealt
+     * @param firstPlayer index of the player holding the 3 of Diamonds
+     */
+    void gameStarted(int firstPlayer);
+
+    /**
+     * Called after every checked move, legal or not
+     * @param result outcome of the move
+     */
+    void moveMade(MoveResult result);
+
+    /**
+     * Called when a player has played all of their cards
+     * @param winner index of the winning player
+     */
+    void gameEnded(int winner);
+}
@@ -1,3 +1,8 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This class is used to model a Big Two card game server.
  * @author Kenneth Wong
@@ -10,6 +15,28 @@ public class BigTwoServer extends CardGameServer {
 	public BigTwoServer() {
 		super("Big Two Server", 4);
 	}
+
+	/**
+	 * Creates and returns an instance of the BigTwoServer class.
+	 * 
+	 * @param maxNumOfTables
+	 *            the maximum number of tables hosted by the server
+	 */
+	public BigTwoServer(int maxNumOfTables) {
+		super("Big Two Server", 4, maxNumOfTables);
+	}
+
+	/**
+	 * Creates and returns an instance of the BigTwoServer class.
+	 * 
+	 * @param maxNumOfTables
+	 *            the maximum number of tables hosted by the server
+	 * @param headless
+	 *            true to log to a file instead of building a GUI
+	 */
+	public BigTwoServer(int maxNumOfTables, boolean headless) {
+		super("Big Two Server", 4, maxNumOfTables, headless);
+	}
 	
 	/**
 	 * Creates and returns an instance of the BigTwoDeck class.
@@ -18,18 +45,67 @@ public class BigTwoServer extends CardGameServer {
 	public Deck createDeck() {
 		return new BigTwoDeck(); 
 	}
+
+	/**
+	 * Creates and returns an instance of the BigTwoEngine class, so that the
+	 * server checks the moves and runs the turn clocks of the tables.
+	 * @return an instance of the BigTwoEngine class
+	 */
+	public BigTwoEngine createEngine() {
+		return new BigTwoEngine();
+	}
 	
 	/**
 	 * main() method for starting the server.
 	 * 
 	 * @param args
 	 *            the port to be used by the server. The default port 5000 will
-	 *            be used if no arguments has been supplied
+	 *            be used if no arguments has been supplied. An optional second
+	 *            argument limits the number of tables. With --headless the
+	 *            server logs to server.log instead of opening a window, and
+	 *            with --journal dir it records every game in a GameJournal
+	 *            in that directory. With --snapshots dir it saves the state
+	 *            of its tables in a SnapshotStore in that directory, and
+	 *            restores them from there when it starts.
 	 */
 	public static void main(String[] args) {
-		BigTwoServer server = new BigTwoServer();
-		if (args.length > 0) {
-			server.start(Integer.parseInt(args[0]));
+		boolean headless = false;
+		String journalDir = null;
+		String snapshotDir = null;
+		List<String> params = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--headless")) {
+				headless = true;
+			} else if (args[i].equals("--journal") && i + 1 < args.length) {
+				journalDir = args[++i];
+			} else if (args[i].equals("--snapshots") && i + 1 < args.length) {
+				snapshotDir = args[++i];
+			} else {
+				params.add(args[i]);
+			}
+		}
+
+		int maxNumOfTables = params.size() > 1 ? Integer.parseInt(params.get(1))
+				: DEFAULT_MAX_NUM_OF_TABLES;
+		BigTwoServer server = new BigTwoServer(maxNumOfTables, headless);
+		if (journalDir != null) {
+			try {
+				server.setJournal(new GameJournal(new File(journalDir)));
+			} catch (IOException ex) {
+				System.err.println("Cannot open the journal in " + journalDir
+						+ ": " + ex);
+			}
+		}
+		if (snapshotDir != null) {
+			try {
+				server.setSnapshots(new SnapshotStore(new File(snapshotDir)));
+			} catch (IOException ex) {
+				System.err.println("Cannot open the snapshots in "
+						+ snapshotDir + ": " + ex);
+			}
+		}
+		if (params.size() > 0) {
+			server.start(Integer.parseInt(params.get(0)));
 		} else {
 			server.start(2396);
 		}
@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Plays large numbers of BigTwo games between computer players
+ * Games are split into tasks on a work-stealing ForkJoinPool; each task deals
+ * with its own SplittableRandom and plays on CardSet bit masks, and the
+ * statistics of the tasks are merged as they are joined
+ * The random generators are split in a fixed order, so a seed always gives the same results
+ * Each game is dealt from a seed drawn from the task's generator, exactly as
+ * Deck.shuffle(long) deals a BigTwoDeck, so any simulated deal can be replayed in a real game
+ * @author Yaw Jalik
+ */
+public class BigTwoSimulator {
+    // Number of games below which a task is not split any further
+    private static final long GAMES_PER_TASK = 1024;
+    // CardSet indices of the cards of a new BigTwoDeck, in deck order
+    private static final int[] NEW_DECK = newDeck();
+
+    private final int numOfPlayers = 4;
+    private final List<Supplier<PlayerStrategy>> strategies;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for a simulator
+     * @param strategies one strategy factory per seat; each task creates its own strategies
+     * @param parallelism number of worker threads
+     */
+    public BigTwoSimulator(List<Supplier<PlayerStrategy>> strategies, int parallelism) {
+        if (strategies.size() != numOfPlayers) {
+            throw new IllegalArgumentException("Need " + numOfPlayers + " strategies");
+        }
+        this.strategies = new ArrayList<>(strategies);
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Plays a number of games and returns the merged statistics
+     * @param games number of games to play
+     * @param seed seed for dealing and for the strategies
+     * @return statistics of all games
+     */
+    public SimulationStats run(long games, long seed) {
+        return pool.invoke(new SimulationTask(games, new SplittableRandom(seed)));
+    }
+
+    /**
+     * Shuts down the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static int[] newDeck() {
+        Deck deck = new BigTwoDeck();
+        int[] cards = new int[deck.size()];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = CardSet.indexOf(deck.getCard(i));
+        }
+        return cards;
+    }
+
+    /**
+     * Plays one game
+     * @param seats strategy of each seat
+     * @param deck scratch array for the dealt deck
+     * @param hands scratch array for the cards of each seat
+     * @param cardsLeft scratch array for the number of cards of each seat
+     * @param random random number generator for the deal and the strategies
+     * @param stats statistics to record the game in
+     */
+    private void playGame(PlayerStrategy[] seats, int[] deck, long[] hands, int[] cardsLeft,
+                          SplittableRandom random, SimulationStats stats) {
+        // Same deal as a BigTwoDeck shuffled with the seed, then 13 cards to each seat
+        System.arraycopy(NEW_DECK, 0, deck, 0, deck.length);
+        Deck.shuffle(deck, random.nextLong());
+        int activePlayer = 0;
+        for (int i = 0; i < numOfPlayers; i++) {
+            hands[i] = CardSet.EMPTY;
+            for (int j = i * 13; j < (i+1) * 13; j++) {
+                hands[i] |= 1L << deck[j];
+            }
+            cardsLeft[i] = 13;
+            if ((hands[i] & CardSet.THREE_OF_DIAMONDS) != 0) {
+                activePlayer = i;
+            }
+        }
+
+        int tableKey = HandClassifier.INVALID;
+        int lastPlayer = -1;
+        while (true) {
+            boolean lead = lastPlayer == -1 || lastPlayer == activePlayer;
+            int key = lead ? HandClassifier.INVALID : tableKey;
+            long required = lastPlayer == -1 ? CardSet.THREE_OF_DIAMONDS : CardSet.EMPTY;
+
+            long move = seats[activePlayer].chooseMove(hands[activePlayer], key, required, !lead, cardsLeft, random);
+            if (!LegalMoveGenerator.isLegal(hands[activePlayer], move, key, required, !lead)) {
+                throw new IllegalStateException("Illegal move " + CardSet.toString(move) + " by seat " + activePlayer);
+            }
+
+            if (move == LegalMoveGenerator.PASS) {
+                stats.recordPass();
+            }
+            else {
+                tableKey = Hand.keyOf(move);
+                lastPlayer = activePlayer;
+                hands[activePlayer] &= ~move;
+                cardsLeft[activePlayer] = CardSet.size(hands[activePlayer]);
+                stats.recordHand(tableKey);
+                if (hands[activePlayer] == CardSet.EMPTY) {
+                    stats.recordGame(activePlayer, hands);
+                    return;
+                }
+            }
+            activePlayer = (activePlayer + 1) % numOfPlayers;
+        }
+    }
+
+    /**
+     * Plays a range of games, splitting it in half until it is small enough
+     */
+    private class SimulationTask extends RecursiveTask<SimulationStats> {
+        private static final long serialVersionUID = -2318456607192034853L;
+
+        private final long games;
+        private final SplittableRandom random;
+
+        SimulationTask(long games, SplittableRandom random) {
+            this.games = games;
+            this.random = random;
+        }
+
+        @Override
+        protected SimulationStats compute() {
+            if (games > GAMES_PER_TASK) {
+                long half = games / 2;
+                SimulationTask left = new SimulationTask(half, random.split());
+                SimulationTask right = new SimulationTask(games - half, random.split());
+                left.fork();
+                SimulationStats stats = right.compute();
+                return stats.merge(left.join());
+            }
+
+            PlayerStrategy[] seats = new PlayerStrategy[numOfPlayers];
+            for (int i = 0; i < numOfPlayers; i++) {
+                seats[i] = strategies.get(i).get();
+            }
+            int[] deck = new int[NEW_DECK.length];
+            long[] hands = new long[numOfPlayers];
+            int[] cardsLeft = new int[numOfPlayers];
+
+            SimulationStats stats = new SimulationStats(numOfPlayers);
+            for (long g = 0; g < games; g++) {
+                playGame(seats, deck, hands, cardsLeft, random, stats);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Plays the weakest legal move, and only passes when nothing else is legal
+     */
+    public static class LowestMoveStrategy implements PlayerStrategy, LegalMoveGenerator.MoveVisitor {
+        private long best;
+        private int bestKey;
+
+        @Override
+        public long chooseMove(long hand, int tableKey, long required, boolean canPass, int[] cardsLeft,
+                               SplittableRandom random) {
+            best = LegalMoveGenerator.PASS;
+            bestKey = Integer.MAX_VALUE;
+            LegalMoveGenerator.generate(hand, tableKey, required, false, this);
+            return best;
+        }
+
+        @Override
+        public void visit(long move, int key) {
+            // Compare within the category so that singles are preferred over bigger hands
+            if ((key & 511) < bestKey) {
+                best = move;
+                bestKey = key & 511;
+            }
+        }
+    }
+
+    /**
+     * Picks uniformly among the legal moves, pass included
+     */
+    public static class RandomMoveStrategy implements PlayerStrategy, LegalMoveGenerator.MoveVisitor {
+        private long chosen;
+        private int seen;
+        private SplittableRandom random;
+
+        @Override
+        public long chooseMove(long hand, int tableKey, long required, boolean canPass, int[] cardsLeft,
+                               SplittableRandom random) {
+            this.random = random;
+            chosen = LegalMoveGenerator.PASS;
+            seen = 0;
+            LegalMoveGenerator.generate(hand, tableKey, required, canPass, this);
+            return chosen;
+        }
+
+        @Override
+        public void visit(long move, int key) {
+            // Reservoir sampling: keep the n-th move with probability 1/n
+            if (random.nextInt(++seen) == 0) {
+                chosen = move;
+            }
+        }
+    }
+
+    /**
+     * Runs a simulation from the command line
+     * @param args number of games (default 1000000), seed (default: current time),
+     *             number of threads (default: number of processors)
+     */
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        List<Supplier<PlayerStrategy>> strategies = new ArrayList<>();
+        strategies.add(LowestMoveStrategy::new);
+        strategies.add(LowestMoveStrategy::new);
+        strategies.add(RandomMoveStrategy::new);
+        strategies.add(RandomMoveStrategy::new);
+
+        BigTwoSimulator simulator = new BigTwoSimulator(strategies, threads);
+        long start = System.nanoTime();
+        SimulationStats stats = simulator.run(games, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        simulator.shutdown();
+
+        System.out.print(stats);
+        System.out.printf("Seed %d, %d threads: %.2f s, %.0f games/s%n", seed, threads, seconds, games / seconds);
+    }
+}
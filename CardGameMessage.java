@@ -41,7 +41,10 @@ public class CardGameMessage extends GameMessage {
 	public static final int READY = 4;
 	/**
 	 * Broadcast by the server when all clients are ready for a new game. In this message, playerID is 
-	 * -1 (no being used), and data is a reference to a Deck object (a shuffled deck for the new game).
+	 * -1 (no being used), and data is a reference to an array of two long holding the seed of the deal
+	 * and the version of the deal algorithm (Deck.DEAL_VERSION); each client deals the same cards by
+	 * shuffling a new deck with the seed (see Deck.shuffle(long)). Older servers send a reference to a
+	 * Deck object (a shuffled deck for the new game) instead.
 	 */
 	public static final int START = 5;
 	/**
@@ -57,6 +60,51 @@ public class CardGameMessage extends GameMessage {
 	 * sent this chat message, and data is a reference to a string containing a formated chat message.
 	 */
 	public static final int MSG = 7;
+	/**
+	 * Sent by a client to the server every few seconds to show that it is still alive, so that the
+	 * server can tell an idle client from a dead connection. The server does not broadcast this
+	 * message. In this message, playerID is -1 (not being used), and data is null (not being used).
+	 */
+	public static final int HEARTBEAT = 8;
+	/**
+	 * Broadcast by the server after it has checked a MOVE message and found the move legal (the
+	 * clients apply it without checking it again). In this message, playerID specifies the player
+	 * who made the move, and data is null for a pass, or a reference to an array of int holding the
+	 * category of the hand played followed by the indices of its cards in a full deck (see
+	 * MoveResult.toCompactForm).
+	 */
+	public static final int RESULT = 9;
+	/**
+	 * Sent by the server to the player who sent a MOVE message with an illegal move. The move is not
+	 * broadcast. In this message, playerID specifies the player who made the move, and data is null
+	 * (not being used).
+	 */
+	public static final int REJECT = 10;
+	/**
+	 * Sent by a client to the server after joining to ask for a session token, and sent back by the
+	 * server with the token. A client holding a token can get its seat back after losing the
+	 * connection (see RESUME). In this message, playerID is -1 (not being used), and data is null
+	 * in the request, or a reference to an array of one long holding the token in the reply.
+	 */
+	public static final int SESSION = 11;
+	/**
+	 * Sent by a client to the server as the first message on a new connection after losing the old
+	 * one, and sent back by the server with the state of the game. In the request, playerID is -1
+	 * (not being used), and data is a reference to an array of long holding the session token, the
+	 * seed of the game the client was playing (0 if none) and the number of RESULT messages it has
+	 * applied since the START message. In the reply, playerID specifies the seat the client is back
+	 * at, and data is null if the session has expired (the client is then a new player), an empty
+	 * array if no game is running, or an array of long beginning with the seed, the deal version
+	 * and the number of moves made so far. If only these 3 values are sent, the RESULT messages the
+	 * client has missed follow; otherwise they are followed by the active seat, the cards of each
+	 * player (CardSet bit masks) and the hands on the table, oldest first (the seat shifted left by
+	 * 56 bits, or'ed with the CardSet bit mask of the hand). A PLAYER_LIST message for the table is
+	 * sent just before a successful reply.
+	 */
+	public static final int RESUME = 12;
+
+	// the ID of the table this message is about (set by the server)
+	private int tableID;
 
 	/**
 	 * Creates and returns an instance of CardGameMessage.
@@ -71,4 +119,41 @@ public class CardGameMessage extends GameMessage {
 	public CardGameMessage(int type, int playerID, Object data) {
 		super(type, playerID, data);
 	}
+
+	/**
+	 * Creates and returns an instance of CardGameMessage for a table.
+	 * 
+	 * @param type
+	 *            the message type of this message
+	 * @param tableID
+	 *            the ID of the table this message is about
+	 * @param playerID
+	 *            the playerID of this message
+	 * @param data
+	 *            the data of this message
+	 */
+	public CardGameMessage(int type, int tableID, int playerID, Object data) {
+		super(type, playerID, data);
+		this.tableID = tableID;
+	}
+
+	/**
+	 * Returns the ID of the table this message is about. A server hosts many
+	 * tables; the server fills this in on every message it sends or receives.
+	 * 
+	 * @return the table ID of this message
+	 */
+	public int getTableID() {
+		return tableID;
+	}
+
+	/**
+	 * Sets the ID of the table this message is about.
+	 * 
+	 * @param tableID
+	 *            the table ID of this message
+	 */
+	public void setTableID(int tableID) {
+		this.tableID = tableID;
+	}
 }
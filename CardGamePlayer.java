@@ -60,9 +60,16 @@ public class CardGamePlayer {
 	 * @param cards the list of cards to be removed from this player
 	 */
 	public void removeCards(CardList cards) {
-		for (int i = 0; i < cards.size(); i++) {
-			cardsInHand.removeCard(cards.getCard(i));
-		}
+		cardsInHand.removeCards(cards.getCardSet());
+	}
+
+	/**
+	 * Returns the cards held by this player as a CardSet bit mask.
+	 * 
+	 * @return the CardSet bit mask of the cards held by this player
+	 */
+	public long getCardSet() {
+		return cardsInHand.getCardSet();
 	}
 
 	/**
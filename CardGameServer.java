@@ -1,9 +1,16 @@
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -12,36 +19,168 @@ import javax.swing.JMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
 
 /**
- * This class is used to model a card game server.
+ * This class is used to model a card game server. The server hosts many
+ * independent tables (GameTable), each running its own card game; new
+ * connections are seated at the least-loaded table with a free seat.
+ * <p>
+ * There are no locks: every change to a table runs on the table's own serial
+ * executor, and the seating of connections runs on a lobby executor, all on
+ * one shared pool. Tables thus run in parallel, and a slow table cannot hold
+ * up the others.
+ * <p>
+ * Log lines go through a RingBufferLogger, so logging never blocks the
+ * tables. They are written to a rolling log file in headless mode, or shown
+ * in a Swing console otherwise.
+ * <p>
+ * When the server knows the rules (see createEngine), each table holds the
+ * authoritative state of its game: moves are checked once, on the server,
+ * and the clients only apply the results. With a GameJournal, every game is
+ * also recorded (see setJournal), and with a SnapshotStore the state of every
+ * table is saved once a second, so a restarted server restores its tables
+ * and holds their seats for the players (see setSnapshots).
+ * <p>
+ * A client may ask for a session token (SESSION). When it loses the
+ * connection during a game, its seat is held instead of being given up, and
+ * the turn clock plays for it; a new connection that sends the token (RESUME)
+ * within the seat hold timeout gets the seat back, with the RESULT messages
+ * it has missed or, if it is too far behind, a snapshot of the game.
+ * <p>
+ * Every timeout (turn clocks, ready deadlines, idle checks, delayed closes)
+ * is a task on one HashedWheelTimer, so millions of them cost no threads and
+ * scheduling or cancelling one is O(1). A player who runs out of time passes,
+ * or plays the lowest card when passing is not allowed; a player who does
+ * not get ready in time, and a client that sends nothing (not even a
+ * HEARTBEAT) for too long, is disconnected.
  * 
  * @author Kenneth Wong
  *
  */
 public class CardGameServer {
+	/**
+	 * The default maximum number of tables hosted by a server.
+	 */
+	public static final int DEFAULT_MAX_NUM_OF_TABLES = 10000;
+	/**
+	 * The log file of a headless server.
+	 */
+	public static final String DEFAULT_LOG_FILE = "server.log";
+	/**
+	 * The time a rejected client gets to read the FULL message before the
+	 * connection is closed, in milliseconds.
+	 */
+	private static final long REJECT_CLOSE_DELAY = 1000;
+	/**
+	 * The most rejected connections waiting to be closed.
+	 */
+	private static final int MAX_PENDING_REJECTIONS = 1024;
+	/**
+	 * The most connections accepted per second by default.
+	 */
+	public static final int DEFAULT_MAX_ACCEPT_RATE = 1000;
+	/**
+	 * The default time a player has for a move, in milliseconds.
+	 */
+	public static final long DEFAULT_TURN_TIMEOUT = 30000;
+	/**
+	 * The default time a player has to get ready for the next game, in
+	 * milliseconds.
+	 */
+	public static final long DEFAULT_READY_TIMEOUT = 120000;
+	/**
+	 * The default time after which a client that has sent nothing is
+	 * disconnected, in milliseconds.
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+	/**
+	 * The default time a seat is held for a player who is away, in
+	 * milliseconds.
+	 */
+	public static final long DEFAULT_SEAT_HOLD_TIMEOUT = 60000;
+	/**
+	 * The time between two snapshots of a table, in milliseconds.
+	 */
+	private static final long SNAPSHOT_INTERVAL = 1000;
+	/**
+	 * The precision of the timer, in milliseconds.
+	 */
+	private static final long TIMER_TICK = 100;
+	/**
+	 * The number of buckets of the timer; one round of the wheel covers
+	 * TIMER_TICK * TIMER_WHEEL_SIZE milliseconds.
+	 */
+	private static final int TIMER_WHEEL_SIZE = 512;
+	/**
+	 * The most characters kept in the console of the GUI.
+	 */
+	private static final int MAX_CONSOLE_LENGTH = 256 * 1024;
+
 	// Flag for silent mode (prevents printing the stack trace)
 	boolean silentMode = true;
 	// The name of this card game server
 	private String serverName;
-	// The maximum number of players in a card game
+	// The maximum number of players in a card game (seats per table)
 	private final int maxNumOfPlayers;
-	// Array for holding sockets of the clients
-	private Socket[] clientSockets;
-	// Array for holding ObjectOutputStreams of the clients
-	private ObjectOutputStream[] clientOutputStreams;
-	// Array for holding player names of the clients
-	private String[] clientNames;
-	// Array for holding ready states of the clients
-	private boolean[] clientReadyStates;
-	// number of current players
+	// The maximum number of tables hosted by this server
+	private final int maxNumOfTables;
+	// Pool running the executors of the lobby and the tables
+	private final ForkJoinPool workers = new ForkJoinPool(Runtime.getRuntime()
+			.availableProcessors(),
+			ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+	// Executor owning the seating state below (tables, openTables,
+	// nextTableID, numOfPlayers, the seat reservations of the tables and the
+	// table of each ConnectionContext)
+	private final SerialExecutor lobby = new SerialExecutor(workers);
+	// Map for looking up the tables by their IDs
+	private final HashMap<Integer, GameTable> tables = new HashMap<Integer, GameTable>();
+	// Tables with a free seat, the least-loaded table first
+	private final TreeSet<GameTable> openTables = new TreeSet<GameTable>(
+			Comparator.comparingInt(GameTable::getNumOfReservedSeats)
+					.thenComparingInt(GameTable::getID));
+	// the ID of the next table to be created
+	private int nextTableID = 0;
+	// Map for looking up the table of a session by its token
+	private final HashMap<Long, GameTable> sessions = new HashMap<Long, GameTable>();
+	// number of current players (over all tables)
 	private int numOfPlayers = 0;
-	// the main frame of the server
+	// Timer for all timeouts; its tasks only hand work to the executors or
+	// close connections
+	private final HashedWheelTimer timer = new HashedWheelTimer(TIMER_TICK,
+			TimeUnit.MILLISECONDS, TIMER_WHEEL_SIZE, "server-timer");
+	// the time a player has for a move (0 for no limit)
+	private long turnTimeout = DEFAULT_TURN_TIMEOUT;
+	// the time a player has to get ready (0 for no limit)
+	private long readyTimeout = DEFAULT_READY_TIMEOUT;
+	// the time a client may send nothing (0 for no limit)
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	// the time a seat is held for a player who is away
+	private long seatHoldTimeout = DEFAULT_SEAT_HOLD_TIMEOUT;
+	// the source of session tokens, which must not be guessable
+	private final SecureRandom tokenSource = new SecureRandom();
+	// the number of rejected connections waiting to be closed
+	private final AtomicInteger pendingRejections = new AtomicInteger();
+	// the most connections accepted per second
+	private int maxAcceptRate = DEFAULT_MAX_ACCEPT_RATE;
+	// the asynchronous logger all log lines go through
+	private final RingBufferLogger logger = new RingBufferLogger();
+	// the main frame of the server (null if headless)
 	private JFrame frame = null;
 	// text area for displaying server states
 	private JTextArea textArea = null;
 	// a boolean indicating if the server is up
 	private boolean serverUp = false;
+	// the non-blocking transport accepting and serving the clients
+	private NioServer nioServer = null;
+	// the bound of the outbound queue of each client, in frames
+	private int maxQueuedFrames = NioServer.DEFAULT_MAX_QUEUED_FRAMES;
+	// what happens to a client that lets its outbound queue fill up
+	private OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+	// the journal finished games are recorded in (null if none)
+	private volatile GameJournal journal = null;
+	// the store the tables are snapshotted to (null if none)
+	private volatile SnapshotStore snapshots = null;
 
 	/**
 	 * Creates and returns an instance of the BigTwoServer class.
@@ -52,17 +191,55 @@ public class CardGameServer {
 	 *            the maximum number of players in a card game
 	 */
 	public CardGameServer(String serverName, int maxNumOfPlayers) {
+		this(serverName, maxNumOfPlayers, DEFAULT_MAX_NUM_OF_TABLES);
+	}
+
+	/**
+	 * Creates and returns an instance of the CardGameServer class.
+	 * 
+	 * @param serverName
+	 *            the name of this card game server
+	 * @param maxNumOfPlayers
+	 *            the maximum number of players in a card game
+	 * @param maxNumOfTables
+	 *            the maximum number of tables hosted by this server
+	 */
+	public CardGameServer(String serverName, int maxNumOfPlayers,
+			int maxNumOfTables) {
+		this(serverName, maxNumOfPlayers, maxNumOfTables, false);
+	}
+
+	/**
+	 * Creates and returns an instance of the CardGameServer class.
+	 * 
+	 * @param serverName
+	 *            the name of this card game server
+	 * @param maxNumOfPlayers
+	 *            the maximum number of players in a card game
+	 * @param maxNumOfTables
+	 *            the maximum number of tables hosted by this server
+	 * @param headless
+	 *            true to log to DEFAULT_LOG_FILE instead of building a GUI
+	 */
+	public CardGameServer(String serverName, int maxNumOfPlayers,
+			int maxNumOfTables, boolean headless) {
 		this.serverName = serverName;
 		this.maxNumOfPlayers = maxNumOfPlayers;
+		this.maxNumOfTables = maxNumOfTables;
 
-		// creates arrays for holding client sockets, output streams, player
-		// names, and ready states
-		clientSockets = new Socket[maxNumOfPlayers];
-		clientOutputStreams = new ObjectOutputStream[maxNumOfPlayers];
-		clientNames = new String[maxNumOfPlayers];
-		clientReadyStates = new boolean[maxNumOfPlayers];
-
-		buildGUI();
+		if (headless) {
+			try {
+				logger.subscribe(new RollingFileLog(DEFAULT_LOG_FILE));
+			} catch (IOException ex) {
+				System.err.println("Cannot open the log file "
+						+ DEFAULT_LOG_FILE + ": " + ex);
+			}
+		} else {
+			buildGUI();
+			logger.subscribe(new ConsoleLogSubscriber());
+		}
+		// writes out the games and lines still queued on exit
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close));
 	}
 
 	/**
@@ -98,7 +275,108 @@ public class CardGameServer {
 	} // buildGUI
 
 	/**
-	 * Starts the server at the specified port
+	 * Sets how many frames may wait to be written to a client, and what
+	 * happens when a client reads so slowly that its queue fills up. Must be
+	 * called before the server starts.
+	 * 
+	 * @param maxQueuedFrames
+	 *            the bound of the outbound queue of each client
+	 * @param overflowPolicy
+	 *            the policy applied when the queue is full
+	 */
+	public void setOutboundLimit(int maxQueuedFrames,
+			OverflowPolicy overflowPolicy) {
+		this.maxQueuedFrames = maxQueuedFrames;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Sets the most connections accepted per second; connections beyond that
+	 * wait in the listen backlog of the server socket. Must be called before
+	 * the server starts.
+	 * 
+	 * @param maxAcceptRate
+	 *            the most connections accepted per second
+	 */
+	public void setMaxAcceptRate(int maxAcceptRate) {
+		this.maxAcceptRate = maxAcceptRate;
+	}
+
+	/**
+	 * Sets the timeouts of the server, in milliseconds; 0 means no limit.
+	 * Must be called before the server starts.
+	 * 
+	 * @param turnTimeout
+	 *            the time a player has for a move
+	 * @param readyTimeout
+	 *            the time a player has to get ready for the next game
+	 * @param idleTimeout
+	 *            the time after which a client that has sent nothing is
+	 *            disconnected
+	 */
+	public void setTimeouts(long turnTimeout, long readyTimeout,
+			long idleTimeout) {
+		this.turnTimeout = turnTimeout;
+		this.readyTimeout = readyTimeout;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Sets the journal every game is recorded in, from its deal to its result.
+	 * Only tables whose moves the server checks (see createEngine) are
+	 * journaled. Must be called before the server starts.
+	 * 
+	 * @param journal
+	 *            the journal, or null for none
+	 */
+	public void setJournal(GameJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Sets the time a seat is held for a player who is away, after losing the
+	 * connection during a game or after a restart; once it is up, the player
+	 * leaves the table. 0 gives up the seat of a lost connection at once. Must
+	 * be called before the server starts.
+	 * 
+	 * @param seatHoldTimeout
+	 *            the time a seat is held, in milliseconds
+	 */
+	public void setSeatHoldTimeout(long seatHoldTimeout) {
+		this.seatHoldTimeout = seatHoldTimeout;
+	}
+
+	/**
+	 * Sets the store the state of every table is saved to. When the server
+	 * starts, the tables found in the store are restored, with every game in
+	 * progress and every seat held for its player (see
+	 * setSeatHoldTimeout). Snapshots are taken on the executors of the tables
+	 * and written by the store in the background, so the tables never wait
+	 * for the disk. Must be called before the server starts.
+	 * 
+	 * @param snapshots
+	 *            the store, or null for none
+	 */
+	public void setSnapshots(SnapshotStore snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	/**
+	 * Writes out the journal, the snapshots and the log.
+	 */
+	private void close() {
+		if (journal != null) {
+			journal.close();
+		}
+		if (snapshots != null) {
+			snapshots.close();
+		}
+		logger.close();
+	}
+
+	/**
+	 * Starts the server at the specified port. Connections are served by the
+	 * event loops of a NioServer; the calling thread only accepts them.
 	 * 
 	 * @param port
 	 *            the specified port at which the server starts
@@ -106,17 +384,28 @@ public class CardGameServer {
 	public void start(int port) {
 		// start the server
 		try {
-			// creates a ServerScoket
-			ServerSocket serverSocket = new ServerSocket(port);
-			println("Starts up the server at localhost:"
-					+ serverSocket.getLocalPort());
+			// binds the server socket and starts the event loops
+			nioServer = new NioServer(new ServerConnectionHandler(),
+					NioServer.defaultNumOfLoops());
+			nioServer.setOutboundLimit(maxQueuedFrames, overflowPolicy);
+			nioServer.setMaxAcceptRate(maxAcceptRate);
+			int localPort = nioServer.bind(port);
+			println("Starts up the server at localhost:" + localPort);
 			serverUp = true;
-			while (serverUp) {
-				// waits for clients to connect
-				Socket clientSocket = serverSocket.accept();
-				addConnection(clientSocket);
-			} // while
-			serverSocket.close();
+			if (snapshots != null) {
+				// restored before any connection is seated: the lobby
+				// executor runs its tasks in order
+				try {
+					List<TableSnapshot> restored = snapshots.load();
+					lobby.execute(() -> restoreTables(restored));
+				} catch (IOException ex) {
+					println("Cannot restore the tables: " + ex);
+				}
+				timer.newTimeout(this::takeSnapshots, SNAPSHOT_INTERVAL,
+						TimeUnit.MILLISECONDS);
+			}
+			// waits for clients to connect
+			nioServer.acceptLoop();
 		} catch (Exception ex) {
 			println("Error in starting up the server at localhost:" + port);
 			if (!silentMode) ex.printStackTrace();
@@ -124,234 +413,1015 @@ public class CardGameServer {
 	} // start
 
 	/**
-	 * Parses the incoming message from the specified client.
+	 * Hands the incoming message from the specified client to the executor of
+	 * its table.
 	 * 
 	 * @param clientSocket
-	 *            the socket connection to the specified client
+	 *            the connection to the specified client
 	 * @param message
 	 *            the message received from the specified client
 	 */
-	private synchronized void parseMessage(Socket clientSocket,
+	private void parseMessage(Connection clientSocket, CardGameMessage message) {
+		// ignores messages from connections without a table (e.g. rejected
+		// because the server is full)
+		ConnectionContext context = clientSocket.getContext();
+		GameTable table = context.getTable();
+		if (table != null) {
+			table.getExecutor().execute(() -> parseMessage(context, message));
+		}
+	}
+
+	/**
+	 * Parses the incoming message from the specified client. Runs on the
+	 * executor of the table.
+	 * 
+	 * @param context
+	 *            the context of the connection to the specified client
+	 * @param message
+	 *            the message received from the specified client
+	 */
+	private void parseMessage(ConnectionContext context,
 			CardGameMessage message) {
-		// updates the playerID
-		for (int i = 0; i < maxNumOfPlayers; i++) {
-			if (clientSockets[i] == clientSocket) {
-				message.setPlayerID(i);
-				break;
-			}
+		// ignores messages from connections without a seat (e.g. unseated
+		// while the message was queued)
+		GameTable table = context.getTable();
+		int playerID = context.getSeat();
+		if (table == null || playerID == -1) {
+			return;
 		}
+		Connection clientSocket = context.getConnection();
+
+		// updates the playerID and the tableID
+		message.setPlayerID(playerID);
+		message.setTableID(table.getID());
 
 		// parses the message based on it type
 		switch (message.getType()) {
 		case CardGameMessage.JOIN:
+			// drops a name that is not a string
+			if (message.getData() != null
+					&& !(message.getData() instanceof String)) {
+				break;
+			}
 			// adds a player to the game
-			addPlayer(clientSocket, (String) message.getData());
+			addPlayer(table, context, (String) message.getData());
 			break;
 		case CardGameMessage.READY:
 			// marks the specified player as ready for a new game
-			setReadyState(clientSocket);
+			setReadyState(table, context);
 			break;
 		case CardGameMessage.MOVE:
-			println("Broadcasts a \"MOVE\" message from "
+			// rejects a move that is not a list of card indices
+			if (message.getData() != null
+					&& !(message.getData() instanceof int[])) {
+				rejectMove(table, context);
+				break;
+			}
+			if (table.getEngine() != null) {
+				// checks the move and broadcasts the result
+				playMove(table, context, (int[]) message.getData());
+				break;
+			}
+			println("Table " + table.getID() + ": broadcasts a \"MOVE\" message from "
 					+ clientSocket.getRemoteSocketAddress());
-			// broadcast the MOVE message to all clients
-			broadcastMessage(message);
+			// broadcast the MOVE message to all clients at the table
+			broadcastMessage(table, message);
+			break;
+		case CardGameMessage.SESSION:
+			issueSession(table, context);
 			break;
 		case CardGameMessage.MSG:
-			println("Broadcasts a user message from "
+			// drops a user message that is not a string
+			if (message.getData() != null
+					&& !(message.getData() instanceof String)) {
+				break;
+			}
+			println("Table " + table.getID() + ": broadcasts a user message from "
 					+ clientSocket.getRemoteSocketAddress());
-			// broadcast the user message to all clients
-			broadcastUserMessage(clientSocket, (String) message.getData());
+			// broadcast the user message to all clients at the table
+			broadcastUserMessage(table, context, (String) message.getData());
 			break;
 		default:
 			println("Wrong message type: " + message.getType());
 			// invalid message
 			break;
 		}
+		table.markChanged();
 	} // parseMessage
 
 	/**
-	 * Broadcasts the specified message to all clients.
+	 * Broadcasts the specified message to all clients at a table. The message
+	 * is encoded once per wire format in use, and the same frame is queued
+	 * for every client using that format.
 	 * 
+	 * @param table
+	 *            the table whose clients receive the message
 	 * @param message
-	 *            the specified message to be broadcast to all clients
+	 *            the specified message to be broadcast to the clients
 	 */
-	private synchronized void broadcastMessage(CardGameMessage message) {
-		if (numOfPlayers > 0) {
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] != null && clientOutputStreams[i] != null) {
-					try {
-						clientOutputStreams[i].writeObject(message);
-					} catch (Exception ex) {
-						println("Error in broadcasting a message to the client at "
-								+ clientSockets[i].getRemoteSocketAddress());
-						if (!silentMode) ex.printStackTrace();
+	private void broadcastMessage(GameTable table,
+			CardGameMessage message) {
+		message.setTableID(table.getID());
+		ByteBuffer[] frames = new ByteBuffer[MessageCodec.Format.values().length];
+		for (int i = 0; i < maxNumOfPlayers; i++) {
+			ConnectionContext context = table.getContext(i);
+			if (context != null) {
+				try {
+					int format = context.getFormat().ordinal();
+					if (frames[format] == null) {
+						frames[format] = MessageFraming.encodeFrame(message,
+								context.getFormat()).asReadOnlyBuffer();
 					}
+					// queues the frame; the event loop writes it
+					context.getConnection().send(frames[format], message);
+				} catch (Exception ex) {
+					println("Error in broadcasting a message to the client at "
+							+ context.getConnection().getRemoteSocketAddress());
+					if (!silentMode) ex.printStackTrace();
 				}
 			}
 		}
 	} // broadcastMessage
 
 	/**
-	 * Adds a new socket connection to the server
+	 * Adds a new socket connection to the server. The connection is seated at
+	 * the least-loaded table with a free seat; a new table is opened if all
+	 * tables are full. Runs on the lobby executor.
 	 * 
 	 * @param clientSocket
-	 *            the socket connection to be added to the server
+	 *            the connection to be added to the server
 	 */
-	private synchronized void addConnection(Socket clientSocket) {
+	private void addConnection(Connection clientSocket) {
+		// picks the least-loaded open table, or opens a new one
+		GameTable table = openTables.isEmpty() ? null : openTables.first();
+		if (table == null && tables.size() < maxNumOfTables) {
+			table = new GameTable(nextTableID++, maxNumOfPlayers, workers);
+			table.setEngine(createEngine());
+			tables.put(table.getID(), table);
+			println("Opens table " + table.getID());
+		}
+
 		// adds this connection to the server if the server is not full
-		if (numOfPlayers < maxNumOfPlayers) {
-			// locates the first empty slot for the new connection
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == null) {
-					try {
-						// creates an ObjectOutputStream for this client socket
-						ObjectOutputStream oostream = new ObjectOutputStream(
-								clientSocket.getOutputStream());
-
-						clientSockets[i] = clientSocket;
-						clientOutputStreams[i] = oostream;
-						clientNames[i] = null;
-						clientReadyStates[i] = false;
-						numOfPlayers++;
-						println("Establishes a connection with a client at "
-								+ clientSocket.getRemoteSocketAddress());
-
-						// creates a thread for receiving messages from this
-						// client
-						Thread t = new Thread(new ClientHandler(clientSocket));
-						t.start();
-
-						// sends the player list to the new player
-						oostream.writeObject(new CardGameMessage(
-								CardGameMessage.PLAYER_LIST, i, clientNames));
-					} catch (Exception ex) {
-						println("Error in establishing a connection with a client at "
-								+ clientSocket.getRemoteSocketAddress());
-						if (!silentMode) ex.printStackTrace();
-					}
-					break;
-				}
-			} // for
+		if (table != null) {
+			// the number of reserved seats is part of the ordering, so the
+			// table is taken out of the set while it changes
+			openTables.remove(table);
+			table.reserveSeat();
+			if (!table.isFullyReserved()) {
+				openTables.add(table);
+			}
+			ConnectionContext context = clientSocket.getContext();
+			context.setTable(table);
+			numOfPlayers++;
+
+			// the seat itself is taken on the table's executor
+			GameTable seatedTable = table;
+			table.getExecutor().execute(
+					() -> seatConnection(seatedTable, context));
 		} else {
-			// Max. no. of players reached
+			// Max. no. of tables reached and all of them are full
 			println("Server is full: cannot establish a connection with a client at "
 					+ clientSocket.getRemoteSocketAddress());
-
-			// creates a thread for sending a FULL message to this client, waits
-			// for 1000 milliseconds and closes the socket
-			Thread t = new Thread(new ClientHandler2(clientSocket));
-			t.start();
+			rejectConnection(clientSocket);
 		}
 
 	} // addConnection
 
 	/**
-	 * Removes a connection from the server (possibly due to connection loss).
+	 * Sends a FULL message to a client the server cannot serve and closes the
+	 * connection REJECT_CLOSE_DELAY milliseconds later, giving the message
+	 * time to arrive. The close is a timer task, so a rejection costs no
+	 * thread; during a reconnect storm with more than MAX_PENDING_REJECTIONS
+	 * closes pending, connections are closed at once instead.
 	 * 
 	 * @param clientSocket
-	 *            the socket connection being removed from the server
+	 *            the connection being rejected
 	 */
-	private synchronized void removeConnection(Socket clientSocket) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					String name = clientNames[i];
+	private void rejectConnection(Connection clientSocket) {
+		try {
+			// sends a FULL message to the client
+			clientSocket.send(new CardGameMessage(CardGameMessage.FULL, -1,
+					null));
+		} catch (Exception ex) {
+			println("Error in sending a FULL message to the client at "
+					+ clientSocket.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
 
-					clientSockets[i] = null;
-					clientOutputStreams[i] = null;
-					clientNames[i] = null;
-					clientReadyStates[i] = false;
-					numOfPlayers--;
+		if (pendingRejections.incrementAndGet() > MAX_PENDING_REJECTIONS) {
+			pendingRejections.decrementAndGet();
+			clientSocket.close();
+			return;
+		}
+		timer.newTimeout(() -> {
+			pendingRejections.decrementAndGet();
+			clientSocket.close();
+		}, REJECT_CLOSE_DELAY, TimeUnit.MILLISECONDS);
+	} // rejectConnection
 
-					println(name + " (" + clientSocket.getRemoteSocketAddress()
-							+ ") leaves the game.");
+	/**
+	 * Seats a new connection at the table it has a reservation for and sends
+	 * it the player list. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the new connection
+	 * @param context
+	 *            the context of the new connection
+	 */
+	private void seatConnection(GameTable table, ConnectionContext context) {
+		Connection clientSocket = context.getConnection();
+		int i = table.seat(context);
+		table.markChanged();
+		println("Table " + table.getID()
+				+ ": establishes a connection with a client at "
+				+ clientSocket.getRemoteSocketAddress());
+		startReadyClock(table, context);
 
-					String remoteAddress = clientSocket
-							.getRemoteSocketAddress().toString();
+		try {
+			// sends the player list to the new player; incoming
+			// messages arrive through the ServerConnectionHandler
+			clientSocket.send(new CardGameMessage(CardGameMessage.PLAYER_LIST,
+					table.getID(), i, table.getNames()));
+		} catch (Exception ex) {
+			println("Error in establishing a connection with a client at "
+					+ clientSocket.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+	} // seatConnection
 
-					// broadcasts a message about the leaving of this player
-					broadcastMessage(new CardGameMessage(CardGameMessage.QUIT,
-							i, remoteAddress));
-					break;
+	/**
+	 * Removes a connection from the server (possibly due to connection loss).
+	 * Runs on the lobby executor; the player is unseated on the executor of
+	 * the table, and only then is the seat released. The seat of a player with
+	 * a session is held instead while a game is running (see holdSeat).
+	 * 
+	 * @param clientSocket
+	 *            the connection being removed from the server
+	 */
+	private void removeConnection(Connection clientSocket) {
+		ConnectionContext context = clientSocket.getContext();
+		GameTable table = context.getTable();
+		if (table != null) {
+			// messages still queued at the table are ignored from now on
+			context.setTable(null);
+			table.getExecutor().execute(() -> {
+				// the seat has already been taken over by a resumed session
+				if (context.getSeat() == -1) {
+					return;
 				}
-			}
+				if (holdSeat(table, context)) {
+					return;
+				}
+				unseatConnection(table, context);
+				long token = context.getToken();
+				lobby.execute(() -> {
+					sessions.remove(token);
+					releaseSeat(table);
+				});
+			});
 		}
 	} // removeConnection
 
 	/**
-	 * adds a player to the game.
+	 * Holds the seat of a player with a session who has lost the connection
+	 * during a game, for seatHoldTimeout milliseconds. The turn clock plays
+	 * for the player meanwhile, and is stopped once no player at the table is
+	 * connected. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param context
+	 *            the context of the lost connection
+	 * @return true if the seat is held, false if the player leaves
+	 */
+	private boolean holdSeat(GameTable table, ConnectionContext context) {
+		if (seatHoldTimeout <= 0 || context.getToken() == 0
+				|| !table.isGameRunning()) {
+			return false;
+		}
+		table.hold(context);
+		table.markChanged();
+		context.setReadyClock(null);
+		if (!table.hasConnectedPlayers()) {
+			table.setTurnClock(null);
+		}
+		println("Table " + table.getID() + ": holds the seat of "
+				+ context.getName() + " ("
+				+ context.getConnection().getRemoteSocketAddress() + ").");
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.MSG,
+				context.getSeat(), context.getName()
+						+ " lost the connection; the seat is held for "
+						+ TimeUnit.MILLISECONDS.toSeconds(seatHoldTimeout)
+						+ " seconds."));
+		timer.newTimeout(() -> table.getExecutor().execute(
+				() -> holdTimedOut(table, context)), seatHoldTimeout,
+				TimeUnit.MILLISECONDS);
+		return true;
+	}
+
+	/**
+	 * Gives a new session token to a player, or sends the one the player
+	 * already has. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param context
+	 *            the context of the player
+	 */
+	private void issueSession(GameTable table, ConnectionContext context) {
+		if (context.getToken() == 0) {
+			long token;
+			do {
+				token = tokenSource.nextLong();
+			} while (token == 0);
+			context.setToken(token);
+			long issued = token;
+			// queued before any removal of the player, which also goes
+			// through the lobby
+			lobby.execute(() -> sessions.put(issued, table));
+		}
+		try {
+			context.getConnection().send(new CardGameMessage(
+					CardGameMessage.SESSION, table.getID(), context.getSeat(),
+					new long[] { context.getToken() }));
+		} catch (Exception ex) {
+			println("Error in sending a session token to the client at "
+					+ context.getConnection().getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Moves a reconnected client to the seat of its session. The client has
+	 * been seated like any new connection; it leaves that seat, and then
+	 * takes over the held one (see reattach). A client with an unknown or
+	 * expired token stays where it is, as a new player. Runs on the lobby
+	 * executor.
 	 * 
 	 * @param clientSocket
-	 *            the socket connection to the player who is joining the game
-	 * @param name
-	 *            the name of the player who is joining the game
+	 *            the new connection of the client
+	 * @param request
+	 *            the data of the RESUME message: token, seed and number of
+	 *            RESULT messages seen
 	 */
-	private synchronized void addPlayer(Socket clientSocket, String name) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					// updates the name of the new player
-					clientNames[i] = name;
+	private void resumeSession(Connection clientSocket, long[] request) {
+		ConnectionContext context = clientSocket.getContext();
+		GameTable current = context.getTable();
+		GameTable target = sessions.get(request[0]);
+		if (current == null) {
+			// rejected, or gone already
+			return;
+		}
+		if (target == null) {
+			current.getExecutor().execute(() -> refuseResume(current, context));
+			return;
+		}
+		context.setTable(null);
+		current.getExecutor().execute(() -> {
+			current.unseat(context);
+			current.markChanged();
+			context.setReadyClock(null);
+			lobby.execute(() -> {
+				releaseSeat(current);
+				if (!clientSocket.isOpen()) {
+					return;
+				}
+				// the held seat is still reserved, and counted as a player
+				context.setTable(target);
+				target.getExecutor().execute(
+						() -> reattach(target, context, request));
+			});
+		});
+	}
 
-					println(name + " (" + clientSocket.getRemoteSocketAddress()
-							+ ") joins the game.");
+	/**
+	 * Tells a client that its session is unknown or has expired, and sends it
+	 * the player list of the table it is at, so that it joins as a new
+	 * player. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the client
+	 * @param context
+	 *            the context of the client
+	 */
+	private void refuseResume(GameTable table, ConnectionContext context) {
+		if (context.getSeat() == -1) {
+			return;
+		}
+		try {
+			context.getConnection().send(new CardGameMessage(
+					CardGameMessage.RESUME, table.getID(), context.getSeat(),
+					null));
+			context.getConnection().send(new CardGameMessage(
+					CardGameMessage.PLAYER_LIST, table.getID(),
+					context.getSeat(), table.getNames()));
+		} catch (Exception ex) {
+			println("Error in refusing a session of the client at "
+					+ context.getConnection().getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gives a seat back to the new connection of its player, and brings the
+	 * client up to date: the RESULT messages it has missed if it still has
+	 * the game it was playing, otherwise a snapshot of the game. An old
+	 * connection still at the seat (one the server has not noticed dropping
+	 * yet) is closed. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the session
+	 * @param context
+	 *            the context of the new connection
+	 * @param request
+	 *            the data of the RESUME message: token, seed and number of
+	 *            RESULT messages seen
+	 */
+	private void reattach(GameTable table, ConnectionContext context,
+			long[] request) {
+		Connection clientSocket = context.getConnection();
+		int i = table.findSession(request[0]);
+		if (i == -1) {
+			// the hold has run out in the meantime: joins as a new player
+			lobby.execute(() -> {
+				if (clientSocket.isOpen() && context.getTable() == table) {
+					addConnection(clientSocket);
+					GameTable seated = context.getTable();
+					if (seated != null) {
+						seated.getExecutor().execute(
+								() -> refuseResume(seated, context));
+					}
+				}
+			});
+			return;
+		}
+		ConnectionContext old = table.reattach(i, context);
+		old.setReadyClock(null);
+		if (old.getConnection() != null && old.getConnection().isOpen()) {
+			old.getConnection().close();
+		}
+		table.markChanged();
+		println("Table " + table.getID() + ": " + context.getName() + " ("
+				+ clientSocket.getRemoteSocketAddress() + ") is back.");
 
-					// broadcasts a message about this player joining the game
-					broadcastMessage(new CardGameMessage(CardGameMessage.JOIN,
-							i, name));
-					break;
+		try {
+			clientSocket.send(new CardGameMessage(CardGameMessage.PLAYER_LIST,
+					table.getID(), i, table.getNames()));
+			if (!table.isGameRunning()) {
+				clientSocket.send(new CardGameMessage(CardGameMessage.RESUME,
+						table.getID(), i, new long[0]));
+			} else {
+				List<CardGameMessage> results = table.getResults();
+				long seen = request[2];
+				if (results != null && request[1] == table.getSeed()
+						&& seen >= 0 && seen <= results.size()) {
+					clientSocket.send(new CardGameMessage(
+							CardGameMessage.RESUME, table.getID(), i,
+							new long[] { table.getSeed(), Deck.DEAL_VERSION,
+									results.size() }));
+					for (int j = (int) seen; j < results.size(); j++) {
+						clientSocket.send(results.get(j));
+					}
+				} else {
+					clientSocket.send(new CardGameMessage(
+							CardGameMessage.RESUME, table.getID(), i,
+							resumeSnapshot(table)));
 				}
 			}
+		} catch (Exception ex) {
+			println("Error in resuming the session of the client at "
+					+ clientSocket.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.MSG, i,
+				context.getName() + " is back."));
+		if (table.isGameRunning()) {
+			if (!table.hasTurnClock()) {
+				startTurnClock(table);
+			}
+		} else if (!context.isReady()) {
+			startReadyClock(table, context);
+		}
+	}
+
+	/**
+	 * Returns the state of the running game at a table in the form of a
+	 * RESUME message (see CardGameMessage.RESUME). Runs on the executor of the
+	 * table.
+	 * 
+	 * @param table
+	 *            the table
+	 * @return the seed, deal version, number of moves, active seat, cards of
+	 *         each player and hands on the table
+	 */
+	private long[] resumeSnapshot(GameTable table) {
+		BigTwoEngine engine = table.getEngine();
+		List<Hand> handsOnTable = engine.getHandsOnTable();
+		long[] state = new long[4 + maxNumOfPlayers + handsOnTable.size()];
+		state[0] = table.getSeed();
+		state[1] = Deck.DEAL_VERSION;
+		state[2] = table.getResults() == null ? -1 : table.getResults().size();
+		state[3] = engine.getActivePlayer();
+		for (int i = 0; i < maxNumOfPlayers; i++) {
+			state[4 + i] = engine.getPlayerList().get(i).getCardSet();
 		}
+		for (int i = 0; i < handsOnTable.size(); i++) {
+			Hand hand = handsOnTable.get(i);
+			state[4 + maxNumOfPlayers + i] = (long) engine.getPlayerList()
+					.indexOf(hand.getPlayer()) << 56 | hand.getCardSet();
+		}
+		return state;
+	}
+
+	/**
+	 * Unseats a leaving player and tells the rest of the table. Runs on the
+	 * executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the leaving player
+	 * @param context
+	 *            the context of the connection of the leaving player
+	 */
+	private void unseatConnection(GameTable table, ConnectionContext context) {
+		Connection clientSocket = context.getConnection();
+		int i = context.getSeat();
+		String name = context.getName();
+		table.unseat(context);
+		table.markChanged();
+		context.setReadyClock(null);
+		if (table.isEmpty()) {
+			// nobody left to play out the game
+			table.setTurnClock(null);
+			finishRecord(table, GameRecord.NO_WINNER);
+		}
+
+		println("Table " + table.getID() + ": " + name + " ("
+				+ clientSocket.getRemoteSocketAddress() + ") leaves the game.");
+
+		String remoteAddress = clientSocket.getRemoteSocketAddress()
+				.toString();
+
+		// broadcasts a message about the leaving of this player
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.QUIT, i,
+				remoteAddress));
+	} // unseatConnection
+
+	/**
+	 * Releases the seat of a player who has left. A table is closed when its
+	 * last seat is released. Runs on the lobby executor.
+	 * 
+	 * @param table
+	 *            the table of the player who has left
+	 */
+	private void releaseSeat(GameTable table) {
+		openTables.remove(table);
+		table.releaseSeat();
+		numOfPlayers--;
+		if (table.getNumOfReservedSeats() == 0) {
+			tables.remove(table.getID());
+			if (snapshots != null) {
+				snapshots.remove(table.getID());
+			}
+			println("Closes table " + table.getID());
+		} else {
+			openTables.add(table);
+		}
+	} // releaseSeat
+
+	/**
+	 * adds a player to the game.
+	 * 
+	 * @param table
+	 *            the table of the player who is joining the game
+	 * @param context
+	 *            the context of the player who is joining the game
+	 * @param name
+	 *            the name of the player who is joining the game
+	 */
+	private void addPlayer(GameTable table, ConnectionContext context,
+			String name) {
+		int i = context.getSeat();
+		// updates the name of the new player
+		context.setName(name);
+
+		println("Table " + table.getID() + ": " + name + " ("
+				+ context.getConnection().getRemoteSocketAddress()
+				+ ") joins the game.");
+
+		// broadcasts a message about this player joining the game
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.JOIN, i,
+				name));
 	} // addPlayer
 
 	/**
 	 * Marks the specified player as ready for a new game.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to the player who becomes ready for a
-	 *            new game
+	 * @param table
+	 *            the table of the player who becomes ready for a new game
+	 * @param context
+	 *            the context of the player who becomes ready for a new game
 	 */
-	private synchronized void setReadyState(Socket clientSocket) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					clientReadyStates[i] = true;
-					println(clientNames[i] + " ("
-							+ clientSocket.getRemoteSocketAddress()
-							+ " ) is ready for the next game.");
-					broadcastMessage(new CardGameMessage(CardGameMessage.READY,
-							i, null));
-					break;
+	private void setReadyState(GameTable table, ConnectionContext context) {
+		int i = context.getSeat();
+		context.setReady(true);
+		context.setReadyClock(null);
+		println("Table " + table.getID() + ": " + context.getName() + " ("
+				+ context.getConnection().getRemoteSocketAddress()
+				+ " ) is ready for the next game.");
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.READY, i,
+				null));
+
+		// checks if all players are ready
+		if (table.allReady()) {
+			// resets the ready states of all the players for the next game
+			table.resetReadyStates();
+
+			// picks the seed of the deal and starts a new game; the clients
+			// deal the same cards from the seed, so the deck is not sent
+			long seed = ThreadLocalRandom.current().nextLong();
+			Deck deck = createDeck();
+			deck.shuffle(seed);
+			table.setSeed(seed);
+			println("Table " + table.getID()
+					+ ": all players are ready. Game starts (seed " + seed
+					+ ").");
+			broadcastMessage(table, new CardGameMessage(
+					CardGameMessage.START, -1, new long[] { seed,
+							Deck.DEAL_VERSION }));
+
+			// starts the authoritative copy of the game and the first turn clock
+			if (table.getEngine() != null) {
+				table.getEngine().start(deck);
+				table.startResults();
+				startTurnClock(table);
+				if (journal != null) {
+					// a game cut short by the new one is journaled as abandoned
+					finishRecord(table, GameRecord.NO_WINNER);
+					table.setRecord(new GameRecord(table.getID(), seed,
+							Deck.DEAL_VERSION, table.getNames(),
+							System.currentTimeMillis()));
 				}
 			}
 		}
+	}
 
-		// checks if all players are ready
-		if (numOfPlayers == maxNumOfPlayers) {
+	/**
+	 * Checks a move with the engine of the table, the only copy of the game
+	 * that checks moves. A legal move is applied and its result broadcast to
+	 * the table; an illegal one is rejected to the player who made it only.
+	 * Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player making the move
+	 * @param context
+	 *            the context of the player making the move
+	 * @param cardIdx
+	 *            the indices of the cards played, or null to pass
+	 */
+	private void playMove(GameTable table, ConnectionContext context,
+			int[] cardIdx) {
+		Connection clientSocket = context.getConnection();
+		MoveResult result = table.getEngine().playMove(context.getSeat(),
+				cardIdx);
+		if (!result.isLegal()) {
+			rejectMove(table, context);
+			return;
+		}
+		println("Table " + table.getID() + ": broadcasts the result of a move from "
+				+ clientSocket.getRemoteSocketAddress());
+		CardGameMessage resultMessage = new CardGameMessage(
+				CardGameMessage.RESULT, context.getSeat(), result.toCompactForm());
+		table.addResult(resultMessage);
+		broadcastMessage(table, resultMessage);
+		recordMove(table, result, false);
+		endTurn(table);
+	}
+
+	/**
+	 * Sends a REJECT message to the player who made an illegal or malformed
+	 * move. The move is not broadcast. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player making the move
+	 * @param context
+	 *            the context of the player making the move
+	 */
+	private void rejectMove(GameTable table, ConnectionContext context) {
+		Connection clientSocket = context.getConnection();
+		println("Table " + table.getID() + ": rejects a move from "
+				+ clientSocket.getRemoteSocketAddress());
+		try {
+			clientSocket.send(new CardGameMessage(CardGameMessage.REJECT,
+					table.getID(), context.getSeat(), null));
+		} catch (Exception ex) {
+			println("Error in rejecting a move of the client at "
+					+ clientSocket.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Starts the clock of the next turn, or the ready deadlines of the
+	 * players once the game has ended. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table whose turn has ended
+	 */
+	private void endTurn(GameTable table) {
+		if (table.isGameRunning()) {
+			startTurnClock(table);
+		} else {
+			table.setTurnClock(null);
+			finishRecord(table, table.getEngine().getWinner());
 			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientReadyStates[i] == false) {
-					// returns if any of the players is not ready
-					return;
+				ConnectionContext context = table.getContext(i);
+				if (context != null && !context.isReady()) {
+					startReadyClock(table, context);
 				}
 			}
+		}
+	}
 
-			// resets the ready states of all the players for the next game
+	/**
+	 * Adds an accepted move to the record of the game at a table. Runs on the
+	 * executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player who made the move
+	 * @param result
+	 *            the result of the move
+	 * @param timedOut
+	 *            true if the turn clock made the move for the player
+	 */
+	private void recordMove(GameTable table, MoveResult result,
+			boolean timedOut) {
+		GameRecord record = table.getRecord();
+		if (record != null) {
+			record.addMove(result.getPlayerIdx(), result.getHand() == null
+					? CardSet.EMPTY : result.getHand().getCardSet(), timedOut,
+					System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Hands the record of the game at a table to the journal, which writes it
+	 * out in the background. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table whose game is over
+	 * @param winner
+	 *            the seat of the winner, or GameRecord.NO_WINNER if the game
+	 *            was abandoned
+	 */
+	private void finishRecord(GameTable table, int winner) {
+		GameRecord record = table.getRecord();
+		if (record != null) {
+			record.setWinner(winner);
+			journal.append(record.toBytes());
+			table.setRecord(null);
+		}
+	}
+
+	/**
+	 * Starts the clock of the active player at a table. Runs on the executor
+	 * of the table.
+	 * 
+	 * @param table
+	 *            the table whose turn starts
+	 */
+	private void startTurnClock(GameTable table) {
+		int turn = table.nextTurn();
+		if (turnTimeout > 0) {
+			table.setTurnClock(timer.newTimeout(() -> table.getExecutor()
+					.execute(() -> turnTimedOut(table, turn)), turnTimeout,
+					TimeUnit.MILLISECONDS));
+		}
+	}
+
+	/**
+	 * Makes the move of a player who has run out of time: a pass, or the
+	 * lowest card when passing is not allowed. The move is broadcast as if
+	 * the player had made it. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param turn
+	 *            the turn the clock was started for
+	 */
+	private void turnTimedOut(GameTable table, int turn) {
+		// the player has moved in the meantime
+		if (table.getTurn() != turn || !table.isGameRunning()) {
+			return;
+		}
+		BigTwoEngine engine = table.getEngine();
+		int playerID = engine.getActivePlayer();
+		int[] cardIdx = engine.getTimeoutMove();
+		println("Table " + table.getID() + ": player " + playerID
+				+ " runs out of time and "
+				+ (cardIdx == null ? "passes." : "plays the lowest card."));
+		MoveResult result = engine.playMove(playerID, cardIdx);
+		CardGameMessage resultMessage = new CardGameMessage(
+				CardGameMessage.RESULT, playerID, result.toCompactForm());
+		table.addResult(resultMessage);
+		broadcastMessage(table, resultMessage);
+		recordMove(table, result, true);
+		endTurn(table);
+		table.markChanged();
+	}
+
+	/**
+	 * Starts the deadline for a player to get ready for the next game. Runs
+	 * on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param context
+	 *            the context of the player
+	 */
+	private void startReadyClock(GameTable table, ConnectionContext context) {
+		if (readyTimeout > 0) {
+			context.setReadyClock(timer.newTimeout(() -> table.getExecutor()
+					.execute(() -> readyTimedOut(table, context)),
+					readyTimeout, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	/**
+	 * Disconnects a player who has not got ready in time. Runs on the
+	 * executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param context
+	 *            the context of the player
+	 */
+	private void readyTimedOut(GameTable table, ConnectionContext context) {
+		if (context.getTable() != table || context.getSeat() == -1
+				|| context.isReady() || table.isGameRunning()) {
+			return;
+		}
+		println("Table " + table.getID() + ": disconnects "
+				+ context.getConnection().getRemoteSocketAddress()
+				+ ": not ready in time.");
+		context.getConnection().close();
+	}
+
+	/**
+	 * Checks if a client has sent anything within the idle timeout, and
+	 * disconnects it if not; otherwise checks again when the timeout would
+	 * be up. Runs on the timer thread.
+	 * 
+	 * @param connection
+	 *            the connection to the client
+	 */
+	private void checkIdle(Connection connection) {
+		if (!connection.isOpen()) {
+			return;
+		}
+		long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+				- connection.getLastReadTime());
+		if (idle >= idleTimeout) {
+			println("Disconnects the idle client at "
+					+ connection.getRemoteSocketAddress());
+			connection.close();
+		} else {
+			timer.newTimeout(() -> checkIdle(connection), idleTimeout - idle,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Hands a snapshot task to the executor of every table, and schedules the
+	 * next round. Runs on the timer thread; the tables are listed on the lobby
+	 * executor.
+	 */
+	private void takeSnapshots() {
+		lobby.execute(() -> {
+			for (GameTable table : tables.values()) {
+				table.getExecutor().execute(() -> snapshotTable(table));
+			}
+		});
+		timer.newTimeout(this::takeSnapshots, SNAPSHOT_INTERVAL,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Hands a snapshot of a table to the store if the table has changed since
+	 * the last one. Copying the state takes a few microseconds; encoding and
+	 * writing happen on the writer thread of the store. Runs on the executor
+	 * of the table.
+	 * 
+	 * @param table
+	 *            the table
+	 */
+	private void snapshotTable(GameTable table) {
+		if (!table.hasChangedSinceSnapshot()) {
+			return;
+		}
+		if (table.isEmpty()) {
+			// the table is about to be closed
+			snapshots.remove(table.getID());
+		} else {
+			snapshots.put(TableSnapshot.capture(table));
+		}
+		table.markSnapshotTaken();
+	}
+
+	/**
+	 * Restores the tables of an earlier run from their snapshots. Every seat
+	 * that was taken is held for its player for seatHoldTimeout milliseconds;
+	 * a running game is restored as it was, with its turn clock stopped
+	 * until a player is back. Runs on the lobby executor, before any
+	 * connection is seated.
+	 * 
+	 * @param restored
+	 *            the snapshots of the tables
+	 */
+	private void restoreTables(List<TableSnapshot> restored) {
+		for (TableSnapshot snapshot : restored) {
+			if (snapshot.getNumOfSeats() != maxNumOfPlayers
+					|| tables.containsKey(snapshot.getTableID())) {
+				continue;
+			}
+			GameTable table = new GameTable(snapshot.getTableID(),
+					maxNumOfPlayers, workers);
+			table.setEngine(createEngine());
+			if (snapshot.isGameRunning() && table.getEngine() != null
+					&& snapshot.getDealVersion() == Deck.DEAL_VERSION) {
+				snapshot.restoreGame(table.getEngine());
+				table.setSeed(snapshot.getSeed());
+				if (journal != null) {
+					try {
+						table.setRecord(snapshot.getRecord());
+					} catch (IOException ex) {
+						println("Table " + table.getID()
+								+ ": cannot restore the record of the game: " + ex);
+					}
+				}
+			}
 			for (int i = 0; i < maxNumOfPlayers; i++) {
-				clientReadyStates[i] = false;
+				if (snapshot.isOccupied(i)) {
+					ConnectionContext held = new ConnectionContext(null);
+					held.setSeat(i);
+					held.setName(snapshot.getName(i));
+					held.setReady(snapshot.isReady(i));
+					held.setToken(snapshot.getToken(i));
+					if (held.getToken() != 0) {
+						sessions.put(held.getToken(), table);
+					}
+					table.hold(held);
+					table.reserveSeat();
+					numOfPlayers++;
+					if (seatHoldTimeout > 0) {
+						timer.newTimeout(() -> table.getExecutor().execute(
+								() -> holdTimedOut(table, held)),
+								seatHoldTimeout, TimeUnit.MILLISECONDS);
+					}
+				}
+			}
+			if (table.getNumOfReservedSeats() == 0) {
+				continue;
 			}
+			tables.put(table.getID(), table);
+			nextTableID = Math.max(nextTableID, table.getID() + 1);
+			if (!table.isFullyReserved()) {
+				openTables.add(table);
+			}
+			println("Restores table " + table.getID()
+					+ (table.isGameRunning() ? " with its game" : ""));
+		}
+	}
 
-			// creates a new deck, shuffles the deck, and starts a new game
-			Deck deck = createDeck();
-			deck.shuffle();
-			println("All players are ready. Game starts.");
-			broadcastMessage(new CardGameMessage(CardGameMessage.START, -1,
-					deck));
+	/**
+	 * Frees a seat held for a player who has not come back in time, and tells
+	 * the rest of the table. Runs on the executor of the table.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param held
+	 *            the context held for the player
+	 */
+	private void holdTimedOut(GameTable table, ConnectionContext held) {
+		int i = held.getSeat();
+		// the player is back
+		if (i == -1 || table.getHeldContext(i) != held) {
+			return;
+		}
+		table.releaseHold(i);
+		table.markChanged();
+		if (table.isEmpty()) {
+			table.setTurnClock(null);
+			finishRecord(table, GameRecord.NO_WINNER);
 		}
+		println("Table " + table.getID() + ": " + held.getName()
+				+ " has not come back and leaves the game.");
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.QUIT, i,
+				""));
+		lobby.execute(() -> {
+			sessions.remove(held.getToken());
+			releaseSeat(table);
+		});
 	}
 
 	/**
@@ -364,132 +1434,130 @@ public class CardGameServer {
 		return new Deck();
 	}
 
-	private synchronized void broadcastUserMessage(Socket clientSocket,
-			String msg) {
-		if (numOfPlayers > 0) {
-			// locates the client in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					String longMsg = clientNames[i] + " ("
-							+ clientSocket.getRemoteSocketAddress() + "): "
-							+ msg;
-					broadcastMessage(new CardGameMessage(CardGameMessage.MSG,
-							i, longMsg));
-					break;
-				}
-			}
-		}
+	/**
+	 * Creates and returns the engine holding the authoritative state of the
+	 * game of a table. With an engine, the server checks every move and
+	 * broadcasts RESULT messages, and runs turn clocks; without one, MOVE
+	 * messages are broadcast unchecked. Overrides this method for a game the
+	 * server knows the rules of.
+	 * 
+	 * @return an engine, or null to leave the rules to the clients
+	 */
+	public BigTwoEngine createEngine() {
+		return null;
+	}
+
+	private void broadcastUserMessage(GameTable table,
+			ConnectionContext context, String msg) {
+		String longMsg = context.getName() + " ("
+				+ context.getConnection().getRemoteSocketAddress() + "): "
+				+ msg;
+		broadcastMessage(table, new CardGameMessage(
+				CardGameMessage.MSG, context.getSeat(), longMsg));
 	}
 
 	/**
-	 * Prints the specified message to the text area.
+	 * Logs the specified message. Never blocks; the message is written out by
+	 * the writer thread of the logger.
 	 * 
 	 * @param msg
 	 */
 	private void println(String msg) {
-		textArea.append(msg + "\n");
-		textArea.setCaretPosition(textArea.getDocument().getLength());
+		logger.log(msg);
 	}
 
 	/**
-	 * This inner class is used for receiving incoming messages from a client
+	 * This inner class is used for showing the log in the text area. Lines
+	 * are collected by the writer thread of the logger and appended in one go
+	 * on the EDT; the oldest text is cut off so that the console does not grow
+	 * without limit.
 	 * 
 	 * @author Kenneth Wong
 	 *
 	 */
-	private class ClientHandler implements Runnable {
-		private Socket clientSocket; // socket connection to the client
-		private ObjectInputStream oistream; // ObjectInputStream of the client
-
-		/**
-		 * Creates and returns an instance of the ClientHandler class.
-		 * 
-		 * @param clientSocket
-		 *            the socket connection to the client
-		 */
-		public ClientHandler(Socket clientSocket) {
-			this.clientSocket = clientSocket;
-			try {
-				// creates an ObjectInputStream and chains it to the InputStream
-				// of the client socket
-				oistream = new ObjectInputStream(clientSocket.getInputStream());
-			} catch (Exception ex) {
-				println("Error in creating an ObjectInputStream for the client at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+	private class ConsoleLogSubscriber implements LogSubscriber {
+		private StringBuilder pending = new StringBuilder();
+
+		public void log(long timeMillis, String message) {
+			pending.append(message).append('\n');
+		}
+
+		public void flush() {
+			String text = pending.toString();
+			pending = new StringBuilder();
+			SwingUtilities.invokeLater(() -> {
+				textArea.append(text);
+				int excess = textArea.getDocument().getLength()
+						- MAX_CONSOLE_LENGTH;
+				if (excess > 0) {
+					textArea.replaceRange("", 0, excess);
+				}
+				textArea.setCaretPosition(textArea.getDocument().getLength());
+			});
+		}
+
+		public void close() {
+		}
+	} // ConsoleLogSubscriber
+
+	/**
+	 * This inner class is used for receiving connection events and incoming
+	 * messages from the event loops of the NioServer
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class ServerConnectionHandler implements ConnectionHandler {
+		// implementation of methods from the ConnectionHandler interface
+		public void connected(Connection connection) {
+			if (idleTimeout > 0) {
+				timer.newTimeout(() -> checkIdle(connection), idleTimeout,
+						TimeUnit.MILLISECONDS);
 			}
-		} // constructor
+			lobby.execute(() -> addConnection(connection));
+		}
 
-		// implementation of method from the Runnable interface
-		public void run() {
-			CardGameMessage message;
-			try {
-				// waits for messages from the client
-				while ((message = (CardGameMessage) oistream.readObject()) != null) {
-					println("Message received from "
-							+ clientSocket.getRemoteSocketAddress());
-					parseMessage(clientSocket, message);
-				} // close while
-			} catch (Exception ex) {
-				println("Error in receiving messages from the client at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
-				// possible connection loss, removes the connection
-				removeConnection(clientSocket);
+		public void messageReceived(Connection connection,
+				CardGameMessage message) {
+			// heartbeats only keep the connection alive (see checkIdle)
+			if (message.getType() == CardGameMessage.HEARTBEAT) {
+				return;
 			}
-		} // run
-	} // ClientHandler
-
-	private class ClientHandler2 implements Runnable {
-		private Socket clientSocket; // socket connection to the client
-
-		/**
-		 * Creates and returns an instance of the ClientHandler2 class.
-		 * 
-		 * @param clientSocket
-		 *            the socket connection to the client
-		 */
-		public ClientHandler2(Socket clientSocket) {
-			this.clientSocket = clientSocket;
-		} // constructor
-
-		// implementation of method from the Runnable interface
-		public void run() {
-			try {
-				// creates an ObjectOutputStream and chains it to the
-				// OutputStream
-				// of the client socket
-				ObjectOutputStream oostream = new ObjectOutputStream(
-						clientSocket.getOutputStream());
-				// sends a FULL message to the client
-				oostream.writeObject(new CardGameMessage(CardGameMessage.FULL,
-						-1, null));
-				oostream.flush();
-			} catch (Exception ex) {
-				println("Error in sending a FULL message to the client at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+			println("Message received from "
+					+ connection.getRemoteSocketAddress());
+			// a session is looked up by the lobby, not by a table
+			if (message.getType() == CardGameMessage.RESUME) {
+				if (message.getData() instanceof long[]
+						&& ((long[]) message.getData()).length == 3) {
+					long[] request = (long[]) message.getData();
+					lobby.execute(() -> resumeSession(connection, request));
+				}
+				return;
 			}
+			parseMessage(connection, message);
+		}
 
-			// sleeps for 1000 milliseconds before closing the socket
-			try {
-				Thread.sleep(1000);
-			} catch (Exception ex) {
-				println("Error in sleeping before closing the client socket at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+		public void disconnected(Connection connection) {
+			if (connection.hasOverflowed()) {
+				println("Disconnects the slow client at "
+						+ connection.getRemoteSocketAddress()
+						+ ": outbound queue full");
+			} else {
+				println("Connection lost with the client at "
+						+ connection.getRemoteSocketAddress());
 			}
-
-			// closes the socket
-			try {
-				clientSocket.close();
-			} catch (Exception ex) {
-				println("Error in closing the client socket at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+			if (connection.getDroppedFrames() > 0
+					|| connection.getCoalescedFrames() > 0) {
+				println("Outbound queue of "
+						+ connection.getRemoteSocketAddress() + ": max depth "
+						+ connection.getMaxQueueDepth() + ", "
+						+ connection.getDroppedFrames() + " dropped, "
+						+ connection.getCoalescedFrames() + " coalesced");
 			}
-		} // run
-	} // ClientHandler2
+			// removes the connection (no-op for rejected connections)
+			lobby.execute(() -> removeConnection(connection));
+		}
+	} // ServerConnectionHandler
 
 	/**
 	 * This inner class is used for handling the Clear menu
@@ -512,6 +1580,7 @@ public class CardGameServer {
 	private class QuitMenuItemListener implements ActionListener {
 		public void actionPerformed(ActionEvent e) {
 			frame.dispose();
+			close();
 			System.exit(0);
 		}
 	} // QuitMenuItemListener
@@ -1,14 +1,19 @@
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 
 /**
- * This class is used to represent a list of cards.
+ * This class is used to represent a list of cards. Alongside the ordered list,
+ * the cards are tracked as a CardSet bit mask so that membership tests, removal
+ * lookups and set algebra do not need to scan the list. The cards in a list are
+ * expected to be distinct, as they are when drawn from a single deck.
  * 
  * @author Kenneth Wong
  */
 public class CardList implements Serializable {
 	private static final long serialVersionUID = -3711761437629470849L;
 	private ArrayList<Card> cards = new ArrayList<Card>();
+	private long cardSet = CardSet.EMPTY;
 
 	/**
 	 * Appends the specified card to the end of this list.
@@ -18,6 +23,7 @@ public class CardList implements Serializable {
 	public void addCard(Card card) {
 		if (card != null) {
 			cards.add(card);
+			cardSet |= CardSet.bit(card);
 		}
 	}
 
@@ -46,7 +52,9 @@ public class CardList implements Serializable {
 	 */
 	public Card removeCard(int i) {
 		if (i >= 0 && i < cards.size()) {
-			return cards.remove(i);
+			Card card = cards.remove(i);
+			cardSet &= ~CardSet.bit(card);
+			return card;
 		} else {
 			return null;
 		}
@@ -62,14 +70,35 @@ public class CardList implements Serializable {
 	 * @return true if this list contained the specified card; otherwise false
 	 */
 	public boolean removeCard(Card card) {
+		if (card == null || !CardSet.contains(cardSet, card)) {
+			return false;
+		}
+		cardSet &= ~CardSet.bit(card);
 		return cards.remove(card);
 	}
 
+	/**
+	 * Removes all cards in the specified card set from this list in a single
+	 * pass. Returns true if this list changed as a result of the call.
+	 * 
+	 * @param set the CardSet bit mask of the cards to be removed
+	 * @return true if this list contained any of the specified cards; otherwise
+	 *         false
+	 */
+	public boolean removeCards(long set) {
+		if ((cardSet & set) == 0) {
+			return false;
+		}
+		cardSet &= ~set;
+		return cards.removeIf(card -> (set & CardSet.bit(card)) != 0);
+	}
+
 	/**
 	 * Removes all cards from this list.
 	 */
 	public void removeAllCards() {
 		cards = new ArrayList<Card>();
+		cardSet = CardSet.EMPTY;
 	}
 
 	/**
@@ -83,7 +112,16 @@ public class CardList implements Serializable {
 	 */
 	public Card setCard(int i, Card card) {
 		if (i >= 0 && i < cards.size()) {
-			return cards.set(i, card);
+			Card old = cards.set(i, card);
+			if (!old.equals(card)) {
+				// the list may hold a duplicate while callers swap cards, so
+				// the set is rebuilt rather than patched
+				cardSet = CardSet.EMPTY;
+				for (Card c : cards) {
+					cardSet |= CardSet.bit(c);
+				}
+			}
+			return old;
 		} else {
 			return null;
 		}
@@ -96,7 +134,29 @@ public class CardList implements Serializable {
 	 * @return true if this list contains the specified card; otherwise false
 	 */
 	public boolean contains(Card card) {
-		return cards.contains(card);
+		return card != null && CardSet.contains(cardSet, card);
+	}
+
+	/**
+	 * Returns the cards in this list as a CardSet bit mask.
+	 * 
+	 * @return the CardSet bit mask of the cards in this list
+	 */
+	public long getCardSet() {
+		return cardSet;
+	}
+
+	/**
+	 * Swaps the cards at the specified positions in this list. The set of cards
+	 * is unchanged, so no bookkeeping is needed.
+	 * 
+	 * @param i the index of one card
+	 * @param j the index of the other card
+	 */
+	public void swapCards(int i, int j) {
+		if (i >= 0 && i < cards.size() && j >= 0 && j < cards.size()) {
+			Collections.swap(cards, i, j);
+		}
 	}
 
 	/**
@@ -0,0 +1,171 @@
+/**
+ * Utility for representing a set of cards as a 52-bit mask (a long)
+ * Each card of a BigTwoDeck owns one bit, ordered by BigTwo rules:
+ * bit 0 is the 3 of Diamonds and bit 51 is the 2 of Spades
+ * So a higher bit always means a stronger card, and set operations
+ * (union, intersection, difference, membership) are single bitwise operations
+ * @author Yaw Jalik
+ */
+public final class CardSet {
+    /**
+     * The empty set
+     */
+    public static final long EMPTY = 0L;
+
+    /**
+     * The set containing all 52 cards
+     */
+    public static final long FULL_DECK = (1L << 52) - 1;
+
+    /**
+     * The set containing only the 3 of Diamonds
+     */
+    public static final long THREE_OF_DIAMONDS = 1L;
+
+    private static final BigTwoCard[] CARDS = new BigTwoCard[52];
+
+    static {
+        for (int suit = 0; suit < 4; suit++) {
+            for (int rank = 0; rank < 13; rank++) {
+                CARDS[indexOf(suit, rank)] = new BigTwoCard(suit, rank);
+            }
+        }
+    }
+
+    private CardSet() {
+    }
+
+    /**
+     * Returns the bit index of a card given its suit and rank
+     * @param suit suit of the card (0 - 3)
+     * @param rank rank of the card (0 - 12)
+     * @return bit index between 0 and 51
+     */
+    public static int indexOf(int suit, int rank) {
+        return ((rank + 11) % 13) * 4 + suit;
+    }
+
+    /**
+     * Returns the bit index of a card
+     * @param card the card
+     * @return bit index between 0 and 51
+     */
+    public static int indexOf(Card card) {
+        return indexOf(card.suit, card.rank);
+    }
+
+    /**
+     * Returns the single-bit set of a card
+     * @param card the card
+     * @return set containing only the card
+     */
+    public static long bit(Card card) {
+        return 1L << indexOf(card);
+    }
+
+    /**
+     * Returns the suit of the card at a bit index
+     * @param index bit index
+     * @return suit of the card
+     */
+    public static int suitOf(int index) {
+        return index & 3;
+    }
+
+    /**
+     * Returns the rank of the card at a bit index
+     * @param index bit index
+     * @return rank of the card (0 = 'A', 1 = '2', 2 = '3', ...)
+     */
+    public static int rankOf(int index) {
+        return ((index >> 2) + 2) % 13;
+    }
+
+    /**
+     * Returns the shared card object at a bit index
+     * Cards are immutable, so the same object can be used everywhere
+     * @param index bit index
+     * @return card at the index
+     */
+    public static BigTwoCard card(int index) {
+        return CARDS[index];
+    }
+
+    /**
+     * Returns the number of cards in a set
+     * @param set the set
+     * @return number of cards
+     */
+    public static int size(long set) {
+        return Long.bitCount(set);
+    }
+
+    /**
+     * Checks if a set contains a card
+     * @param set the set
+     * @param card the card
+     * @return true if the card is in the set, false otherwise
+     */
+    public static boolean contains(long set, Card card) {
+        return (set & bit(card)) != 0;
+    }
+
+    /**
+     * Checks if a set contains every card of another set
+     * @param set the set
+     * @param subset the cards to be checked
+     * @return true if all cards of subset are in the set, false otherwise
+     */
+    public static boolean containsAll(long set, long subset) {
+        return (subset & ~set) == 0;
+    }
+
+    /**
+     * Returns the bit index of the strongest card in a non-empty set
+     * @param set the set
+     * @return bit index of the highest card
+     */
+    public static int highest(long set) {
+        return 63 - Long.numberOfLeadingZeros(set);
+    }
+
+    /**
+     * Returns the bit index of the weakest card in a non-empty set
+     * @param set the set
+     * @return bit index of the lowest card
+     */
+    public static int lowest(long set) {
+        return Long.numberOfTrailingZeros(set);
+    }
+
+    /**
+     * Returns the set of cards in a list
+     * @param cards list of cards, may be null
+     * @return set of the cards
+     */
+    public static long of(CardList cards) {
+        return cards == null ? EMPTY : cards.getCardSet();
+    }
+
+    /**
+     * Builds a list of cards from a set, ordered from weakest to strongest
+     * @param set the set
+     * @return list of the cards in the set
+     */
+    public static CardList toCardList(long set) {
+        CardList cards = new CardList();
+        for (long s = set; s != 0; s &= s - 1) {
+            cards.addCard(CARDS[Long.numberOfTrailingZeros(s)]);
+        }
+        return cards;
+    }
+
+    /**
+     * Returns a string representation of a set
+     * @param set the set
+     * @return string representation of the set
+     */
+    public static String toString(long set) {
+        return toCardList(set).toString();
+    }
+}
@@ -0,0 +1,415 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A client connection of a NioServer
+ * Messages may be sent from any thread; they are queued as frames and written
+ * by the event loop that owns the connection when the socket can take them
+ * Messages are sent in the wire format the client last used, as recorded in
+ * the connection's context; until the client has sent anything that is Java
+ * serialization, which every client can read
+ * The outbound queue is bounded; when a slow client lets it fill up, the
+ * connection's OverflowPolicy decides what gives, so a slow client only ever
+ * costs its own frames and never holds up the sender
+ * @author Yaw Jalik
+ */
+public class Connection {
+    private static final int INITIAL_READ_BUFFER_SIZE = 8192;
+    // Most frames handed to one gathering write
+    private static final int MAX_FRAMES_PER_WRITE = 16;
+
+    private final SocketChannel channel;
+    private final NioServer.EventLoop loop;
+    private final SocketAddress remoteAddress;
+    private final int maxQueuedFrames;
+    private final OverflowPolicy overflowPolicy;
+    // Guarded by itself, like inFlight and the counters below
+    private final ArrayDeque<Frame> outbound = new ArrayDeque<>();
+    // Number of frames at the head of the queue handed to the current write
+    private int inFlight = 0;
+    private int maxQueueDepth = 0;
+    private long droppedFrames = 0;
+    private long coalescedFrames = 0;
+    private boolean overflowed = false;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // System.nanoTime() of the last read that got any bytes
+    private volatile long lastReadTime = System.nanoTime();
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    private final ByteBuffer[] writeBatch = new ByteBuffer[MAX_FRAMES_PER_WRITE];
+    private SelectionKey key;
+    private final ConnectionContext context = new ConnectionContext(this);
+
+    /**
+     * Constructor for a connection
+     * @param channel the accepted socket channel
+     * @param loop the event loop that owns the connection
+     * @param maxQueuedFrames most frames waiting to be written
+     * @param overflowPolicy what to do when the queue is full
+     */
+    Connection(SocketChannel channel, NioServer.EventLoop loop, int maxQueuedFrames,
+            OverflowPolicy overflowPolicy) {
+        this.channel = channel;
+        this.loop = loop;
+        this.remoteAddress = channel.socket().getRemoteSocketAddress();
+        this.maxQueuedFrames = maxQueuedFrames;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Returns the address of the client
+     * @return remote socket address
+     */
+    public SocketAddress getRemoteSocketAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Check if the connection is still open
+     * @return true if open, false once closed
+     */
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    /**
+     * Returns when the client last sent anything
+     * @return System.nanoTime() of the last read that got any bytes
+     */
+    public long getLastReadTime() {
+        return lastReadTime;
+    }
+
+    /**
+     * Returns what the server knows about this client
+     * @return the context of this connection
+     */
+    public ConnectionContext getContext() {
+        return context;
+    }
+
+    /**
+     * Returns the wire format messages to this client are encoded in
+     * @return the format of the last frame received from the client
+     */
+    public MessageCodec.Format getFormat() {
+        return context.getFormat();
+    }
+
+    /**
+     * Returns the number of frames waiting to be written
+     * @return current queue depth
+     */
+    public int getQueueDepth() {
+        synchronized (outbound) {
+            return outbound.size();
+        }
+    }
+
+    /**
+     * Returns the deepest the outbound queue has been
+     * @return maximum queue depth
+     */
+    public int getMaxQueueDepth() {
+        synchronized (outbound) {
+            return maxQueueDepth;
+        }
+    }
+
+    /**
+     * Returns the number of frames dropped because the queue was full
+     * @return number of dropped frames
+     */
+    public long getDroppedFrames() {
+        synchronized (outbound) {
+            return droppedFrames;
+        }
+    }
+
+    /**
+     * Returns the number of queued frames replaced by a newer one
+     * @return number of coalesced frames
+     */
+    public long getCoalescedFrames() {
+        synchronized (outbound) {
+            return coalescedFrames;
+        }
+    }
+
+    /**
+     * Check if the connection was closed because the client could not keep up
+     * @return true if the outbound queue overflowed
+     */
+    public boolean hasOverflowed() {
+        synchronized (outbound) {
+            return overflowed;
+        }
+    }
+
+    /**
+     * Encodes and queues a message for this connection
+     * @param message message to be sent
+     * @throws IOException if the message cannot be encoded
+     */
+    public void send(CardGameMessage message) throws IOException {
+        send(MessageFraming.encodeFrame(message, context.getFormat()), message);
+    }
+
+    /**
+     * Queues an encoded frame that the overflow policy must never drop
+     * @param frame complete frame, length prefix included
+     */
+    public void send(ByteBuffer frame) {
+        send(frame, null);
+    }
+
+    /**
+     * Queues an encoded frame for this connection
+     * The frame itself is left untouched, so one frame can be sent to many
+     * connections
+     * @param frame complete frame, length prefix included
+     * @param message the message in the frame, which tells the overflow policy
+     *            whether the frame may be dropped or coalesced; null if it may not
+     */
+    public void send(ByteBuffer frame, CardGameMessage message) {
+        if (closed.get()) {
+            return;
+        }
+        Frame queued = new Frame(frame.duplicate(), message);
+        boolean disconnect = false;
+        synchronized (outbound) {
+            if (overflowed) {
+                return;
+            }
+            if (outbound.size() < maxQueuedFrames) {
+                outbound.add(queued);
+                maxQueueDepth = Math.max(maxQueueDepth, outbound.size());
+            } else if (!makeRoom(queued)) {
+                overflowed = true;
+                disconnect = true;
+            }
+        }
+        if (disconnect) {
+            close();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            loop.scheduleFlush(this);
+        }
+    }
+
+    /**
+     * Applies the overflow policy to a frame sent while the queue is full
+     * Frames handed to the current write and frames already partly written
+     * are left alone
+     * Called while holding the queue
+     * @param queued the new frame
+     * @return false if the connection must be closed instead
+     */
+    private boolean makeRoom(Frame queued) {
+        if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+            return false;
+        }
+        boolean coalesce = overflowPolicy == OverflowPolicy.COALESCE && queued.coalesceKey != Frame.NO_KEY;
+        Frame superseded = null;
+        Frame oldestChat = null;
+        int i = 0;
+        for (Frame f : outbound) {
+            if (i++ < inFlight || f.buffer.position() > 0) {
+                continue;
+            }
+            if (f.coalesceKey == queued.coalesceKey) {
+                superseded = f;
+            } else if (!f.chat && f.coalesceKey == Frame.NO_KEY) {
+                // a game event in between keeps both frames meaningful
+                superseded = null;
+            }
+            if (oldestChat == null && f.chat) {
+                oldestChat = f;
+            }
+        }
+        if (coalesce && superseded != null) {
+            // the newer frame replaces the queued one, in its place
+            superseded.buffer = queued.buffer;
+            coalescedFrames++;
+            return true;
+        }
+        if (queued.chat) {
+            droppedFrames++;
+            return true;
+        }
+        if (oldestChat != null) {
+            outbound.removeFirstOccurrence(oldestChat);
+            outbound.add(queued);
+            droppedFrames++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the connection; frames still queued are discarded
+     */
+    public void close() {
+        loop.execute(this::closeNow);
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Reads what the socket has and hands every complete frame to the handler
+     * Called on the event loop
+     * @param handler receiver of the decoded messages
+     * @throws IOException if reading fails or a frame is invalid
+     */
+    void read(ConnectionHandler handler) throws IOException {
+        int n = channel.read(readBuffer);
+        if (n < 0) {
+            throw new IOException("Connection closed by the client");
+        }
+        if (n > 0) {
+            lastReadTime = System.nanoTime();
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= MessageFraming.HEADER_SIZE) {
+            int length = readBuffer.getInt(readBuffer.position());
+            MessageFraming.checkLength(length);
+            int frameSize = MessageFraming.HEADER_SIZE + length;
+            if (readBuffer.remaining() < frameSize) {
+                if (frameSize > readBuffer.capacity()) {
+                    // Grow to fit the whole frame
+                    ByteBuffer bigger = ByteBuffer.allocate(frameSize);
+                    bigger.put(readBuffer);
+                    bigger.flip();
+                    readBuffer = bigger;
+                }
+                break;
+            }
+            int start = readBuffer.position() + MessageFraming.HEADER_SIZE;
+            CardGameMessage message = MessageFraming.decode(readBuffer.array(), start, length);
+            context.setFormat(MessageCodec.formatOf(readBuffer.array(), start));
+            readBuffer.position(start + length);
+            handler.messageReceived(this, message);
+        }
+        readBuffer.compact();
+        if (readBuffer.capacity() > INITIAL_READ_BUFFER_SIZE && pendingFrameSize() <= INITIAL_READ_BUFFER_SIZE) {
+            // The large frame it grew for is done, and the next one fits: go back to the normal size
+            ByteBuffer smaller = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+            readBuffer.flip();
+            smaller.put(readBuffer);
+            readBuffer = smaller;
+        }
+    }
+
+    /**
+     * Returns the size of the frame whose start is buffered, counting only
+     * the bytes buffered while its header is incomplete
+     * Called on the event loop, with the read buffer compacted
+     * @return the size of the pending frame, or 0 if nothing is buffered
+     */
+    private int pendingFrameSize() {
+        int buffered = readBuffer.position();
+        if (buffered < MessageFraming.HEADER_SIZE) {
+            return buffered;
+        }
+        return MessageFraming.HEADER_SIZE + readBuffer.getInt(0);
+    }
+
+    /**
+     * Writes queued frames until the queue is empty or the socket is full
+     * Several frames go out in one gathering write
+     * Called on the event loop
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        flushScheduled.set(false);
+        while (true) {
+            // The frames handed to the write stay at the head of the queue,
+            // where senders leave them alone
+            int n = 0;
+            synchronized (outbound) {
+                for (Frame frame : outbound) {
+                    writeBatch[n++] = frame.buffer;
+                    if (n == MAX_FRAMES_PER_WRITE) {
+                        break;
+                    }
+                }
+                inFlight = n;
+            }
+            if (n == 0) {
+                break;
+            }
+            channel.write(writeBatch, 0, n);
+            int written = 0;
+            while (written < n && !writeBatch[written].hasRemaining()) {
+                written++;
+            }
+            synchronized (outbound) {
+                for (int i = 0; i < written; i++) {
+                    outbound.poll();
+                }
+                inFlight = 0;
+            }
+            Arrays.fill(writeBatch, 0, n, null);
+            if (written < n) {
+                // Socket buffer is full: wait until it can be written again
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Closes the channel and reports the disconnection once
+     * Called on the event loop
+     */
+    void closeNow() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (outbound) {
+            outbound.clear();
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // nothing else to do with a broken channel
+        }
+        loop.disconnected(this);
+    }
+
+    /**
+     * A queued frame and what the overflow policy needs to know about it
+     */
+    private static class Frame {
+        static final long NO_KEY = -1;
+
+        ByteBuffer buffer;
+        final boolean chat;
+        // Frames with the same key carry the same state; only the newest matters
+        final long coalesceKey;
+
+        Frame(ByteBuffer buffer, CardGameMessage message) {
+            this.buffer = buffer;
+            this.chat = message != null && message.getType() == CardGameMessage.MSG;
+            this.coalesceKey = message != null && message.getType() == CardGameMessage.READY
+                    ? ((long) message.getTableID() << 32) | (message.getPlayerID() & 0xFFFFFFFFL)
+                    : NO_KEY;
+        }
+    }
+}
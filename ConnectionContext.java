@@ -0,0 +1,142 @@
+/**
+ * What the server knows about one client connection: its table and seat, the
+ * player's name and ready flag, and the wire format the client speaks
+ * Every Connection carries one, so handlers get from a connection to its player
+ * without searching
+ * The table is set by the server's lobby; seat, name, ready flag, session
+ * token and ready deadline are only touched on the table's executor
+ * @author Yaw Jalik
+ */
+public class ConnectionContext {
+    private final Connection connection;
+    private volatile MessageCodec.Format format = MessageCodec.Format.JAVA_SERIALIZATION;
+    private volatile GameTable table = null;
+    private int seat = -1;
+    private String name = null;
+    private boolean ready = false;
+    private long token = 0;
+    private HashedWheelTimer.Timeout readyClock = null;
+
+    /**
+     * Constructor for the context of a new connection
+     * @param connection the connection
+     */
+    public ConnectionContext(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Returns the connection
+     * @return the connection this context belongs to
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns the wire format messages to this client are encoded in
+     * @return the format of the last frame received from the client
+     */
+    public MessageCodec.Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the wire format messages to this client are encoded in
+     * @param format the format the client used last
+     */
+    public void setFormat(MessageCodec.Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Returns the table of the client
+     * @return the table, or null if the client has none (yet or any more)
+     */
+    public GameTable getTable() {
+        return table;
+    }
+
+    /**
+     * Sets the table of the client
+     * @param table the table, or null once the client leaves
+     */
+    public void setTable(GameTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Returns the seat of the client at its table
+     * @return seat index, or -1 if not seated
+     */
+    public int getSeat() {
+        return seat;
+    }
+
+    /**
+     * Sets the seat of the client at its table
+     * @param seat seat index, or -1 once unseated
+     */
+    public void setSeat(int seat) {
+        this.seat = seat;
+    }
+
+    /**
+     * Returns the name of the player
+     * @return name, or null if the player has not joined yet
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the player
+     * @param name name of the player
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Check if the player is ready for the next game
+     * @return true if ready, false otherwise
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Sets whether the player is ready for the next game
+     * @param ready true if ready, false otherwise
+     */
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * Returns the session token the client can get its seat back with
+     * @return token, or 0 if the client has not asked for one
+     */
+    public long getToken() {
+        return token;
+    }
+
+    /**
+     * Sets the session token of the client
+     * @param token token, or 0 for none
+     */
+    public void setToken(long token) {
+        this.token = token;
+    }
+
+    /**
+     * Replaces the deadline for the player to get ready; the previous one is cancelled
+     * @param readyClock timeout ending the wait, or null to stop waiting
+     */
+    public void setReadyClock(HashedWheelTimer.Timeout readyClock) {
+        if (this.readyClock != null) {
+            this.readyClock.cancel();
+        }
+        this.readyClock = readyClock;
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Receives the events of the connections of a NioServer
+ * Called on the event-loop thread that owns the connection, so implementations
+ * must not block
+ * @author Yaw Jalik
+ */
+public interface ConnectionHandler {
+    /**
+     * Called once a new connection has been registered with an event loop
+     * @param connection the new connection
+     */
+    void connected(Connection connection);
+
+    /**
+     * Called for every complete message received on a connection
+     * @param connection the connection the message came from
+     * @param message the decoded message
+     */
+    void messageReceived(Connection connection, CardGameMessage message);
+
+    /**
+     * Called once when a connection is closed, by either side or after an error
+     * @param connection the closed connection
+     */
+    void disconnected(Connection connection);
+}
@@ -1,11 +1,26 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * This class is used to represent a deck of cards in general card games.
+ * <p>
+ * A deck is shuffled from a 64-bit seed, so that a game can be reproduced (and
+ * sent over the network) as its seed rather than its cards: a newly
+ * initialized deck shuffled with the same seed always ends up in the same
+ * order, as long as the deal algorithm (DEAL_VERSION) is the same.
  * 
  * @author Kenneth Wong
  */
 public class Deck extends CardList {
 	private static final long serialVersionUID = -3886066435694112173L;
 
+	/**
+	 * The version of the deal algorithm: an unbiased Fisher-Yates shuffle
+	 * driven by a SplittableRandom created from the seed. Changes whenever the
+	 * same seed would deal different cards.
+	 */
+	public static final int DEAL_VERSION = 1;
+
 	/**
 	 * Creates and returns an instance of the Deck class.
 	 */
@@ -27,15 +42,39 @@ public class Deck extends CardList {
 	}
 
 	/**
-	 * Shuffles the deck of cards.
+	 * Shuffles the deck of cards with a random seed.
 	 */
 	public void shuffle() {
-		for (int i = 0; i < this.size(); i++) {
-			int j = (int) (Math.random() * this.size());
-			if (i != j) {
-				Card card = setCard(i, getCard(j));
-				setCard(j, card);
-			}
+		shuffle(ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Shuffles the deck of cards with the deal algorithm of DEAL_VERSION.
+	 * 
+	 * @param seed the seed of the deal
+	 */
+	public void shuffle(long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int i = size() - 1; i > 0; i--) {
+			swapCards(i, random.nextInt(i + 1));
+		}
+	}
+
+	/**
+	 * Shuffles an array the same way shuffle(long) shuffles a deck, so that
+	 * an array holding the cards of a newly initialized deck (in any
+	 * representation) ends up in the order of the deck.
+	 * 
+	 * @param cards the array to be shuffled
+	 * @param seed the seed of the deal
+	 */
+	public static void shuffle(int[] cards, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int i = cards.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int card = cards[i];
+			cards[i] = cards[j];
+			cards[j] = card;
 		}
 	}
 }
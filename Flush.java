@@ -19,17 +19,8 @@ public class Flush extends Hand {
      */
     @Override
     public boolean isValid() {
-        if (size() != 5) {
-            return false;
-        }
-
-        int suit = getCard(0).suit;
-        for (int i = 1; i < 5; i++) {
-            if (getCard(i).suit != suit) {
-                return false;
-            }
-        }
-        return true;
+        return this.size() == 5
+                && HandClassifier.category(HandClassifier.classify(getCardSet())) == HandClassifier.FLUSH;
     }
 
     /**
@@ -41,24 +32,4 @@ public class Flush extends Hand {
         return "Flush";
     }
 
-    /**
-     * Overriding default beats method
-     * If hand is a Straight, this hand wins
-     * Else if hand is a Flush, use default beats method
-     * Else, it loses
-     * @param hand the hand to be checked
-     * @return true if this beats the hand, false otherwise
-     */
-    @Override
-    public boolean beats(Hand hand) {
-        if (hand.size() < 5 || hand.getType().equals("Straight")) {
-            return true;
-        }
-        else if (hand.getType().equals("Flush")) {
-            return super.beats(hand);
-        }
-        else {
-            return false;
-        }
-    }
 }
@@ -0,0 +1,344 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.w3c.dom.Node;
+
+/**
+ * Images of the playing area, decoded once when the GUI starts
+ * Every image is converted to the screen's format, so painting only copies
+ * pixels; the cards are packed into one atlas image, one cell per CardSet
+ * index plus the back of the card, and drawn from there. Animated avatars are
+ * kept frame by frame and the frame to show is picked from the clock
+ * A card image that cannot be read is replaced by a drawn placeholder, so the
+ * table is playable without the cards directory
+ * @author Yaw Jalik
+ */
+public class GameAssets {
+    /**
+     * Avatar shown while the game is running
+     */
+    public static final int AVATAR_PLAYING = 0;
+
+    /**
+     * Avatar of the winner
+     */
+    public static final int AVATAR_WIN = 1;
+
+    /**
+     * Avatar of the other players when the game is over
+     */
+    public static final int AVATAR_LOSE = 2;
+
+    private static final String[] AVATAR_SUFFIXES = {"", "_win", "_lose"};
+    private static final String RANK_CHARS = "a23456789tjqk";
+    private static final String SUIT_CHARS = "dchs";
+    private static final String[] SUIT_SYMBOLS = {"\u2666", "\u2663", "\u2665", "\u2660"};
+
+    // Card size used when there is no image of the back of the card
+    private static final int DEFAULT_CARD_WIDTH = 73;
+    private static final int DEFAULT_CARD_HEIGHT = 97;
+    private static final int DEFAULT_FRAME_DELAY = 100;
+
+    // Cell of the back of the card in the atlas, after the 52 cards
+    private static final int BACK = 52;
+    private static final int ATLAS_COLUMNS = 14;
+
+    private final GraphicsConfiguration config;
+    private final BufferedImage background;
+    private final BufferedImage[][][] avatars;
+    private final int[][] avatarDelays;
+    private final BufferedImage cardAtlas;
+    private final int cardWidth;
+    private final int cardHeight;
+
+    private GameAssets(String directory, int numOfPlayers) {
+        config = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        File root = new File(directory);
+
+        BufferedImage image = read(new File(root, "backgrounds/background.png"));
+        background = image == null ? null : convert(image, Transparency.OPAQUE);
+
+        avatars = new BufferedImage[numOfPlayers][AVATAR_SUFFIXES.length][];
+        avatarDelays = new int[numOfPlayers][AVATAR_SUFFIXES.length];
+        for (int i = 0; i < numOfPlayers; i++) {
+            for (int j = 0; j < AVATAR_SUFFIXES.length; j++) {
+                File file = new File(root, "avatars/0" + (i + 1) + AVATAR_SUFFIXES[j] + ".gif");
+                avatarDelays[i][j] = DEFAULT_FRAME_DELAY;
+                avatars[i][j] = readFrames(file, i, j);
+            }
+        }
+
+        BufferedImage back = read(new File(root, "cards/b.gif"));
+        cardWidth = back == null ? DEFAULT_CARD_WIDTH : back.getWidth();
+        cardHeight = back == null ? DEFAULT_CARD_HEIGHT : back.getHeight();
+        cardAtlas = createImage(ATLAS_COLUMNS * cardWidth, ((BACK + ATLAS_COLUMNS) / ATLAS_COLUMNS) * cardHeight,
+                Transparency.TRANSLUCENT);
+        Graphics2D g = cardAtlas.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(new Font("Sans Serif", Font.BOLD, 12));
+        for (int index = 0; index < BACK; index++) {
+            int suit = CardSet.suitOf(index);
+            int rank = CardSet.rankOf(index);
+            image = read(new File(root, "cards/" + RANK_CHARS.charAt(rank) + SUIT_CHARS.charAt(suit) + ".gif"));
+            if (image != null) {
+                g.drawImage(image, cellX(index), cellY(index), null);
+            } else {
+                drawPlaceholder(g, cellX(index), cellY(index), rank, suit);
+            }
+        }
+        if (back != null) {
+            g.drawImage(back, cellX(BACK), cellY(BACK), null);
+        } else {
+            drawPlaceholderBack(g, cellX(BACK), cellY(BACK));
+        }
+        g.dispose();
+    }
+
+    /**
+     * Loads the images of the playing area
+     * @param directory directory containing backgrounds, avatars and cards
+     * @param numOfPlayers number of players, each with their own avatars
+     * @return the loaded images
+     */
+    public static GameAssets load(String directory, int numOfPlayers) {
+        return new GameAssets(directory, numOfPlayers);
+    }
+
+    /**
+     * Returns the width of a card
+     * @return card width in pixels
+     */
+    public int getCardWidth() {
+        return cardWidth;
+    }
+
+    /**
+     * Returns the height of a card
+     * @return card height in pixels
+     */
+    public int getCardHeight() {
+        return cardHeight;
+    }
+
+    /**
+     * Returns the width of the widest avatar
+     * @return avatar width in pixels
+     */
+    public int getAvatarWidth() {
+        int width = 0;
+        for (BufferedImage[][] player : avatars) {
+            for (BufferedImage[] frames : player) {
+                for (BufferedImage frame : frames) {
+                    width = Math.max(width, frame.getWidth());
+                }
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Returns the delay between the frames of the avatars
+     * @return shortest frame delay in milliseconds
+     */
+    public int getAvatarFrameDelay() {
+        int delay = Integer.MAX_VALUE;
+        for (int[] delays : avatarDelays) {
+            for (int d : delays) {
+                delay = Math.min(delay, d);
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Draws the background, or fills the area if there is no background image
+     * @param g graphics
+     * @param width width of the area
+     * @param height height of the area
+     */
+    public void drawBackground(Graphics g, int width, int height) {
+        if (background != null) {
+            g.drawImage(background, 0, 0, null);
+        } else {
+            g.setColor(Color.DARK_GRAY);
+            g.fillRect(0, 0, width, height);
+        }
+    }
+
+    /**
+     * Draws the current frame of an avatar with its bottom at a given line
+     * @param g graphics
+     * @param player index of the player
+     * @param kind AVATAR_PLAYING, AVATAR_WIN or AVATAR_LOSE
+     * @param x left of the avatar
+     * @param bottom bottom of the avatar
+     */
+    public void drawAvatar(Graphics g, int player, int kind, int x, int bottom) {
+        BufferedImage[] frames = avatars[player][kind];
+        if (frames.length == 0) {
+            return;
+        }
+        BufferedImage frame = frames[(int) ((System.currentTimeMillis() / avatarDelays[player][kind]) % frames.length)];
+        g.drawImage(frame, x, bottom - frame.getHeight(), null);
+    }
+
+    /**
+     * Draws the face of a card
+     * @param g graphics
+     * @param card the card
+     * @param x left of the card
+     * @param y top of the card
+     */
+    public void drawCard(Graphics g, Card card, int x, int y) {
+        drawCell(g, CardSet.indexOf(card), x, y);
+    }
+
+    /**
+     * Draws the back of a card
+     * @param g graphics
+     * @param x left of the card
+     * @param y top of the card
+     */
+    public void drawBack(Graphics g, int x, int y) {
+        drawCell(g, BACK, x, y);
+    }
+
+    private void drawCell(Graphics g, int cell, int x, int y) {
+        int sx = cellX(cell);
+        int sy = cellY(cell);
+        g.drawImage(cardAtlas, x, y, x + cardWidth, y + cardHeight, sx, sy, sx + cardWidth, sy + cardHeight, null);
+    }
+
+    private int cellX(int cell) {
+        return (cell % ATLAS_COLUMNS) * cardWidth;
+    }
+
+    private int cellY(int cell) {
+        return (cell / ATLAS_COLUMNS) * cardHeight;
+    }
+
+    private void drawPlaceholder(Graphics2D g, int x, int y, int rank, int suit) {
+        g.setColor(Color.WHITE);
+        g.fillRoundRect(x, y, cardWidth - 1, cardHeight - 1, 8, 8);
+        g.setColor(Color.GRAY);
+        g.drawRoundRect(x, y, cardWidth - 1, cardHeight - 1, 8, 8);
+        g.setColor(suit == 0 || suit == 2 ? Color.RED : Color.BLACK);
+        String rankName = rank == 9 ? "10" : String.valueOf(Character.toUpperCase(RANK_CHARS.charAt(rank)));
+        g.drawString(rankName, x + 3, y + 13);
+        g.drawString(SUIT_SYMBOLS[suit], x + 3, y + 26);
+    }
+
+    private void drawPlaceholderBack(Graphics2D g, int x, int y) {
+        g.setColor(new Color(65, 10, 125));
+        g.fillRoundRect(x, y, cardWidth - 1, cardHeight - 1, 8, 8);
+        g.setColor(Color.WHITE);
+        g.drawRoundRect(x, y, cardWidth - 1, cardHeight - 1, 8, 8);
+        g.drawRoundRect(x + 4, y + 4, cardWidth - 9, cardHeight - 9, 6, 6);
+    }
+
+    private BufferedImage createImage(int width, int height, int transparency) {
+        if (config != null) {
+            return config.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+                transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private BufferedImage convert(BufferedImage image, int transparency) {
+        BufferedImage converted = createImage(image.getWidth(), image.getHeight(), transparency);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    private static BufferedImage read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return ImageIO.read(file);
+        } catch (IOException ex) {
+            System.err.println("Cannot read " + file + ": " + ex);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes every frame of an avatar GIF, each frame drawn over the
+     * previous ones as the GIF's disposal methods say, and keeps its frame delay
+     */
+    private BufferedImage[] readFrames(File file, int player, int kind) {
+        if (!file.isFile()) {
+            return new BufferedImage[0];
+        }
+        List<BufferedImage> frames = new ArrayList<>();
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return new BufferedImage[0];
+            }
+            ImageReader reader = readers.next();
+            reader.setInput(in);
+            BufferedImage canvas = null;
+            for (int i = 0; ; i++) {
+                BufferedImage image;
+                try {
+                    image = reader.read(i);
+                } catch (IndexOutOfBoundsException ex) {
+                    break;
+                }
+                IIOMetadata metadata = reader.getImageMetadata(i);
+                Node root = metadata.getAsTree("javax_imageio_gif_image_1.0");
+                int left = 0, top = 0, delay = 0;
+                String disposal = "none";
+                for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+                    if (node.getNodeName().equals("ImageDescriptor")) {
+                        left = attribute(node, "imageLeftPosition");
+                        top = attribute(node, "imageTopPosition");
+                    } else if (node.getNodeName().equals("GraphicControlExtension")) {
+                        delay = attribute(node, "delayTime") * 10;
+                        disposal = node.getAttributes().getNamedItem("disposalMethod").getNodeValue();
+                    }
+                }
+                if (canvas == null) {
+                    canvas = new BufferedImage(Math.max(reader.getWidth(0), left + image.getWidth()),
+                            Math.max(reader.getHeight(0), top + image.getHeight()), BufferedImage.TYPE_INT_ARGB);
+                }
+                if (i == 0 && delay > 0) {
+                    avatarDelays[player][kind] = delay;
+                }
+
+                Graphics2D g = canvas.createGraphics();
+                g.drawImage(image, left, top, null);
+                g.dispose();
+                frames.add(convert(canvas, Transparency.TRANSLUCENT));
+                if (disposal.equals("restoreToBackgroundColor")) {
+                    g = canvas.createGraphics();
+                    g.setComposite(AlphaComposite.Clear);
+                    g.fillRect(left, top, image.getWidth(), image.getHeight());
+                    g.dispose();
+                }
+            }
+            reader.dispose();
+        } catch (IOException ex) {
+            System.err.println("Cannot read " + file + ": " + ex);
+        }
+        return frames.toArray(new BufferedImage[0]);
+    }
+
+    private static int attribute(Node node, String name) {
+        return Integer.parseInt(node.getAttributes().getNamedItem(name).getNodeValue());
+    }
+}
@@ -0,0 +1,246 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only journal of finished games (see GameRecord)
+ * Records are written into segment files through a MappedByteBuffer by one
+ * background writer thread; append only queues the encoded record, so the
+ * tables never wait for the disk. The mapped pages are forced to the disk in
+ * batches, at most once per FORCE_INTERVAL, and a new segment is started when
+ * a record does not fit in the current one
+ * <p>
+ * Segment format: the 4 bytes MAGIC, 1 byte GameRecord.VERSION, then the
+ * records back to back; the unused end of a segment is zero, and a record
+ * never has a zero length, so a reader stops at the first zero length
+ * Segments are named journal-NNNNNNNN.seg and numbered in the order they are written
+ * @author Yaw Jalik
+ */
+public class GameJournal {
+    /**
+     * First bytes of every segment file
+     */
+    public static final int MAGIC = 0x42324a4c; // "B2JL"
+
+    /**
+     * Size of the header at the start of every segment
+     */
+    public static final int SEGMENT_HEADER_SIZE = 5;
+
+    /**
+     * Default size of a segment file
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Most records waiting for the writer; records beyond that are dropped
+     * and counted rather than making the tables wait
+     */
+    public static final int MAX_PENDING_RECORDS = 65536;
+
+    private static final long FORCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final File directory;
+    private final int segmentSize;
+    private final ConcurrentLinkedQueue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numOfPending = new AtomicInteger();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean writerWaiting = false;
+    private volatile boolean running = true;
+    // Only touched by the writer thread
+    private int segmentNumber;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private boolean dirty = false;
+    private long lastForce = System.nanoTime();
+
+    /**
+     * Constructor for a journal with the default segment size
+     * Starts the writer thread
+     * @param directory directory of the segment files, created if needed
+     * @throws IOException if the first segment cannot be created
+     */
+    public GameJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructor for a journal
+     * Segments already in the directory are kept; writing starts in a new
+     * segment after the last one
+     * Starts the writer thread
+     * @param directory directory of the segment files, created if needed
+     * @param segmentSize size of a segment file, the most a record can take
+     * @throws IOException if the first segment cannot be created
+     */
+    public GameJournal(File directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File[] segments = listSegments(directory);
+        segmentNumber = segments.length == 0 ? 0 : numberOf(segments[segments.length - 1]);
+        openSegment();
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the segment files of a journal directory, oldest first
+     * @param directory directory of the segment files
+     * @return segment files, empty if there are none
+     */
+    public static File[] listSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.matches("journal-\\d{8}\\.seg"));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Queues a record to be written; never blocks
+     * @param record encoded record (see GameRecord.toBytes)
+     */
+    public void append(byte[] record) {
+        if (!running || numOfPending.incrementAndGet() > MAX_PENDING_RECORDS) {
+            numOfPending.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.add(record);
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Returns the number of records written to the segments
+     * @return number of written records
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Returns the number of records dropped because the writer fell behind,
+     * the journal was closed, or the record was larger than a segment
+     * @return number of dropped records
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes out the queued records, forces them to the disk and stops the writer
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (running) {
+                if (drain() == 0) {
+                    force(false);
+                    writerWaiting = true;
+                    // a record queued just before the flag was set would not unpark us
+                    if (pending.isEmpty() && running) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    writerWaiting = false;
+                } else {
+                    force(false);
+                }
+            }
+            drain();
+            force(true);
+            channel.close();
+        } catch (IOException ex) {
+            // the journal cannot be used any more; the server keeps running
+            System.err.println("Journal in " + directory + " stopped: " + ex);
+            running = false;
+            dropped.addAndGet(numOfPending.getAndSet(0));
+            pending.clear();
+        }
+    }
+
+    /**
+     * Copies the queued records into the mapped segment
+     * @return number of records written
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        byte[] record;
+        while ((record = pending.poll()) != null) {
+            numOfPending.decrementAndGet();
+            if (record.length > segmentSize - SEGMENT_HEADER_SIZE) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            if (record.length > segment.remaining()) {
+                force(true);
+                openSegment();
+            }
+            segment.put(record);
+            dirty = true;
+            written.incrementAndGet();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Forces the written records to the disk, unless that was done less than
+     * FORCE_INTERVAL ago
+     */
+    private void force(boolean now) {
+        if (dirty && (now || System.nanoTime() - lastForce >= FORCE_INTERVAL_NANOS)) {
+            segment.force();
+            dirty = false;
+            lastForce = System.nanoTime();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        segmentNumber++;
+        File file = new File(directory, String.format("journal-%08d.seg", segmentNumber));
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.putInt(MAGIC);
+        segment.put((byte) GameRecord.VERSION);
+        dirty = true;
+    }
+
+    private static int numberOf(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring("journal-".length(), name.length() - ".seg".length()));
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The history of one game as written to a GameJournal: the deal (seed and
+ * deal version), the names at the table, every accepted move with its time,
+ * and the winner
+ * A record is built by its table while the game runs, so it is only touched
+ * on the table's executor; adding a move only appends to a few arrays, and
+ * the record is encoded once, when the game is over
+ * Records read back from a journal are used to replay games (see GameReplayer)
+ * <p>
+ * Record format, version 1:
+ * <pre>
+ * length       4 bytes, size of the rest of the record
+ * version      1 byte
+ * dealVersion  varint
+ * seed         8 bytes
+ * startTime    8 bytes, milliseconds since the epoch
+ * tableID      varint
+ * names        varint count, then count strings (as in MessageCodec)
+ * moves        varint count, then per move:
+ *   seat       1 byte, plus TIMED_OUT if the turn clock made the move
+ *   time       varint milliseconds since the previous move (or the start)
+ *   cards      1 byte count (0 for a pass), then one byte per card (CardSet index)
+ * winner       zigzag varint, NO_WINNER if the game was abandoned
+ * </pre>
+ * @author Yaw Jalik
+ */
+public class GameRecord {
+    /**
+     * Version of the record format, written in every record
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Winner of a game that was abandoned before anyone won
+     */
+    public static final int NO_WINNER = -1;
+
+    /**
+     * Flag added to the seat of a move the turn clock made for the player
+     */
+    public static final int TIMED_OUT = 0x80;
+
+    private static final int INITIAL_MOVES = 64;
+
+    private final int tableID;
+    private final long seed;
+    private final int dealVersion;
+    private final long startTime;
+    private final String[] names;
+    private int numOfMoves = 0;
+    private byte[] seats = new byte[INITIAL_MOVES];
+    private long[] cards = new long[INITIAL_MOVES];
+    private long[] times = new long[INITIAL_MOVES];
+    private int winner = NO_WINNER;
+
+    /**
+     * Constructor for the record of a game that has just started
+     * @param tableID ID of the table
+     * @param seed seed of the deal
+     * @param dealVersion version of the deal algorithm (Deck.DEAL_VERSION)
+     * @param names names of the players, indexed by seat
+     * @param startTime start of the game, in milliseconds since the epoch
+     */
+    public GameRecord(int tableID, long seed, int dealVersion, String[] names, long startTime) {
+        this.tableID = tableID;
+        this.seed = seed;
+        this.dealVersion = dealVersion;
+        this.names = names.clone();
+        this.startTime = startTime;
+    }
+
+    /**
+     * Adds an accepted move
+     * @param seat seat of the player who made the move
+     * @param move CardSet bit mask of the cards played, CardSet.EMPTY for a pass
+     * @param timedOut true if the turn clock made the move for the player
+     * @param time time of the move, in milliseconds since the epoch
+     */
+    public void addMove(int seat, long move, boolean timedOut, long time) {
+        if (numOfMoves == seats.length) {
+            seats = Arrays.copyOf(seats, numOfMoves * 2);
+            cards = Arrays.copyOf(cards, numOfMoves * 2);
+            times = Arrays.copyOf(times, numOfMoves * 2);
+        }
+        seats[numOfMoves] = (byte) (timedOut ? seat | TIMED_OUT : seat);
+        cards[numOfMoves] = move;
+        times[numOfMoves] = time;
+        numOfMoves++;
+    }
+
+    /**
+     * Sets the winner once the game is over
+     * @param winner seat of the winner, or NO_WINNER if the game was abandoned
+     */
+    public void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    /**
+     * Returns the ID of the table the game was played at
+     * @return table ID
+     */
+    public int getTableID() {
+        return tableID;
+    }
+
+    /**
+     * Returns the seed of the deal
+     * @return seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the version of the deal algorithm
+     * @return deal version, see Deck.DEAL_VERSION
+     */
+    public int getDealVersion() {
+        return dealVersion;
+    }
+
+    /**
+     * Returns the start of the game
+     * @return start time, in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the names of the players
+     * @return names, indexed by seat
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * Returns the number of moves made so far
+     * @return number of moves
+     */
+    public int getNumOfMoves() {
+        return numOfMoves;
+    }
+
+    /**
+     * Returns the seat of the player who made a move
+     * @param i index of the move
+     * @return seat index
+     */
+    public int getSeat(int i) {
+        return seats[i] & ~TIMED_OUT;
+    }
+
+    /**
+     * Check if the turn clock made a move for the player
+     * @param i index of the move
+     * @return true if the move was made by the turn clock, false otherwise
+     */
+    public boolean isTimedOut(int i) {
+        return (seats[i] & TIMED_OUT) != 0;
+    }
+
+    /**
+     * Returns the cards played in a move
+     * @param i index of the move
+     * @return CardSet bit mask of the cards, CardSet.EMPTY for a pass
+     */
+    public long getMove(int i) {
+        return cards[i];
+    }
+
+    /**
+     * Returns the time of a move
+     * @param i index of the move
+     * @return time, in milliseconds since the epoch
+     */
+    public long getTime(int i) {
+        return times[i];
+    }
+
+    /**
+     * Returns the winner
+     * @return seat of the winner, or NO_WINNER if the game was abandoned
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Encodes the record, length prefix included
+     * @return the encoded record
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + numOfMoves * 4);
+        // placeholder for the length
+        out.write(new byte[4], 0, 4);
+        out.write(VERSION);
+        MessageCodec.writeVarint(out, dealVersion);
+        MessageCodec.writeLong(out, seed);
+        MessageCodec.writeLong(out, startTime);
+        MessageCodec.writeVarint(out, tableID);
+        MessageCodec.writeVarint(out, names.length);
+        for (String name : names) {
+            MessageCodec.writeString(out, name);
+        }
+        MessageCodec.writeVarint(out, numOfMoves);
+        long previous = startTime;
+        for (int i = 0; i < numOfMoves; i++) {
+            out.write(seats[i]);
+            MessageCodec.writeVarint(out, (int) Math.max(0, times[i] - previous));
+            previous = times[i];
+            out.write(CardSet.size(cards[i]));
+            for (long s = cards[i]; s != 0; s &= s - 1) {
+                out.write(Long.numberOfTrailingZeros(s));
+            }
+        }
+        MessageCodec.writeVarint(out, MessageCodec.zigzag(winner));
+
+        byte[] record = out.toByteArray();
+        ByteBuffer.wrap(record).putInt(0, record.length - 4);
+        return record;
+    }
+
+    /**
+     * Decodes a record, length prefix included
+     * The buffer is left after the record, even if the record is invalid
+     * @param in buffer positioned at the length of the record (a mapped segment works)
+     * @return the decoded record
+     * @throws IOException if the record is invalid
+     */
+    public static GameRecord read(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length <= 0 || length > in.remaining()) {
+            throw new StreamCorruptedException("Bad record length " + length);
+        }
+        ByteBuffer body = in.slice();
+        body.limit(length);
+        in.position(in.position() + length);
+        try {
+            return readBody(body);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new StreamCorruptedException("Truncated record");
+        }
+    }
+
+    private static GameRecord readBody(ByteBuffer in) throws IOException {
+        int version = in.get() & 0xFF;
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported record version " + version);
+        }
+        int dealVersion = MessageCodec.readVarint(in);
+        long seed = in.getLong();
+        long startTime = in.getLong();
+        int tableID = MessageCodec.readVarint(in);
+        String[] names = new String[MessageCodec.readCount(in)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = MessageCodec.readString(in);
+        }
+        GameRecord record = new GameRecord(tableID, seed, dealVersion, names, startTime);
+
+        int numOfMoves = MessageCodec.readCount(in);
+        long time = startTime;
+        for (int i = 0; i < numOfMoves; i++) {
+            int seat = in.get() & 0xFF;
+            time += MessageCodec.readVarint(in);
+            int size = in.get() & 0xFF;
+            long move = CardSet.EMPTY;
+            for (int j = 0; j < size; j++) {
+                int index = in.get() & 0xFF;
+                if (index >= 52) {
+                    throw new StreamCorruptedException("Bad card " + index);
+                }
+                move |= 1L << index;
+            }
+            record.addMove(seat & ~TIMED_OUT, move, (seat & TIMED_OUT) != 0, time);
+        }
+        record.setWinner(MessageCodec.unzigzag(MessageCodec.readVarint(in)));
+        return record;
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Replays journaled games (see GameJournal) through the rules
+ * Every game is dealt again from its seed and its moves are played on a
+ * BigTwoEngine, which checks them as the server did; a game whose moves are
+ * not all legal, or whose winner differs, has diverged. Running a journal
+ * through a changed engine thus shows which real games the change would
+ * have decided differently, and the games that replay as journaled rebuild
+ * the game statistics
+ * Segments are mapped read-only; the records of a segment are found by their
+ * length prefixes and replayed in ranges on a work-stealing ForkJoinPool,
+ * one engine per task
+ * @author Yaw Jalik
+ */
+public class GameReplayer {
+    // Number of games below which a task is not split any further
+    private static final int GAMES_PER_TASK = 256;
+
+    private final int numOfPlayers = 4;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for a replayer
+     * @param parallelism number of worker threads
+     */
+    public GameReplayer(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Replays every game of some segments
+     * @param segments segment files, see GameJournal.listSegments
+     * @return statistics of all games
+     * @throws IOException if a segment cannot be read
+     */
+    public ReplayStats replay(File... segments) throws IOException {
+        ReplayStats stats = new ReplayStats(numOfPlayers);
+        for (File file : segments) {
+            ByteBuffer segment = map(file);
+            int[] offsets = findRecords(segment);
+            stats.merge(pool.invoke(new ReplayTask(file.getName(), segment, offsets, 0, offsets.length)));
+        }
+        return stats;
+    }
+
+    /**
+     * Shuts down the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (segment.remaining() < GameJournal.SEGMENT_HEADER_SIZE || segment.getInt() != GameJournal.MAGIC) {
+                throw new IOException(file + " is not a journal segment");
+            }
+            int version = segment.get() & 0xFF;
+            if (version != GameRecord.VERSION) {
+                throw new IOException(file + " has unsupported record version " + version);
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Finds the start of every record of a segment from the length prefixes
+     * Stops at the zero length after the last record, or at a record cut
+     * short (a segment being written, or left by a crash)
+     */
+    private static int[] findRecords(ByteBuffer segment) {
+        int[] offsets = new int[1024];
+        int count = 0;
+        int pos = segment.position();
+        while (pos <= segment.limit() - 4) {
+            int length = segment.getInt(pos);
+            if (length <= 0 || length > segment.limit() - pos - 4) {
+                break;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = pos;
+            pos += 4 + length;
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Replays one game on an engine
+     * @param record the journaled game
+     * @param engine engine to replay on, reset by the deal
+     * @return null if the game replayed as journaled, otherwise what diverged
+     */
+    private String replayGame(GameRecord record, BigTwoEngine engine) {
+        BigTwoDeck deck = new BigTwoDeck();
+        deck.shuffle(record.getSeed());
+        engine.start(deck);
+
+        for (int i = 0; i < record.getNumOfMoves(); i++) {
+            int seat = record.getSeat(i);
+            long move = record.getMove(i);
+            if (seat >= numOfPlayers) {
+                return "move " + i + ": no seat " + seat;
+            }
+            CardGamePlayer player = engine.getPlayerList().get(seat);
+            if (!CardSet.containsAll(player.getCardSet(), move)) {
+                return "move " + i + ": seat " + seat + " does not hold " + CardSet.toString(move);
+            }
+            MoveResult result = engine.playMove(seat, LegalMoveGenerator.toCardIdx(player.getCardsInHand(), move));
+            if (!result.isLegal()) {
+                return "move " + i + ": seat " + seat + " may not play "
+                        + (move == CardSet.EMPTY ? "a pass" : CardSet.toString(move));
+            }
+        }
+
+        if (engine.getWinner() != record.getWinner()) {
+            return "winner " + engine.getWinner() + " instead of " + record.getWinner();
+        }
+        return null;
+    }
+
+    /**
+     * Adds a game that replayed as journaled to the statistics
+     */
+    private void recordGame(GameRecord record, BigTwoEngine engine, ReplayStats stats) {
+        SimulationStats gameStats = stats.getGameStats();
+        for (Hand hand : engine.getHandsOnTable()) {
+            gameStats.recordHand(hand.getKey());
+        }
+        for (int i = engine.getHandsOnTable().size(); i < record.getNumOfMoves(); i++) {
+            gameStats.recordPass();
+        }
+        if (engine.endOfGame()) {
+            long[] hands = new long[numOfPlayers];
+            for (int i = 0; i < numOfPlayers; i++) {
+                hands[i] = engine.getPlayerList().get(i).getCardSet();
+            }
+            gameStats.recordGame(engine.getWinner(), hands);
+        }
+        stats.recordReplayed(engine.endOfGame());
+    }
+
+    /**
+     * Replays a range of the records of a segment, splitting it in half until
+     * it is small enough
+     */
+    private class ReplayTask extends RecursiveTask<ReplayStats> {
+        private static final long serialVersionUID = 5830279412563094117L;
+
+        private final String segmentName;
+        private final ByteBuffer segment;
+        private final int[] offsets;
+        private final int from;
+        private final int to;
+
+        ReplayTask(String segmentName, ByteBuffer segment, int[] offsets, int from, int to) {
+            this.segmentName = segmentName;
+            this.segment = segment;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ReplayStats compute() {
+            if (to - from > GAMES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ReplayTask left = new ReplayTask(segmentName, segment, offsets, from, middle);
+                ReplayTask right = new ReplayTask(segmentName, segment, offsets, middle, to);
+                left.fork();
+                ReplayStats stats = right.compute();
+                return stats.merge(left.join());
+            }
+
+            // every task reads through its own view of the mapped segment
+            ByteBuffer in = segment.duplicate();
+            BigTwoEngine engine = new BigTwoEngine();
+            ReplayStats stats = new ReplayStats(numOfPlayers);
+            for (int i = from; i < to; i++) {
+                in.position(offsets[i]);
+                GameRecord record;
+                try {
+                    record = GameRecord.read(in);
+                } catch (IOException ex) {
+                    stats.recordSkipped();
+                    continue;
+                }
+                if (record.getDealVersion() != Deck.DEAL_VERSION || record.getNames().length != numOfPlayers) {
+                    stats.recordSkipped();
+                    continue;
+                }
+                String divergence = replayGame(record, engine);
+                if (divergence == null) {
+                    recordGame(record, engine, stats);
+                } else {
+                    stats.recordDivergence(segmentName + "@" + offsets[i] + " table " + record.getTableID()
+                            + ", seed " + record.getSeed() + ": " + divergence);
+                }
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Replays a journal from the command line
+     * @param args journal directory, number of threads (default: number of processors)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java GameReplayer <journal directory> [threads]");
+            System.exit(1);
+        }
+        File[] segments = GameJournal.listSegments(new File(args[0]));
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        GameReplayer replayer = new GameReplayer(threads);
+        long start = System.nanoTime();
+        ReplayStats stats = replayer.replay(segments);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        replayer.shutdown();
+
+        long games = stats.getReplayed() + stats.getDiverged() + stats.getSkipped();
+        System.out.print(stats);
+        System.out.printf("%d segments, %d threads: %.2f s, %.0f games/s%n",
+                segments.length, threads, seconds, games / seconds);
+    }
+}
@@ -0,0 +1,442 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The state of one table of a CardGameServer: the seats and the contexts of
+ * the connections seated at them, and the game engine with its turn clock
+ * A seat can also be held for a player who is away (after losing the
+ * connection, or after a restart of the server): the held seat is taken, but
+ * nothing is sent to it, until the player resumes the session
+ *
+ * The seats and the game are only touched by tasks run on the table's
+ * executor; the reserved-seat count belongs to the server's lobby executor instead
+ * @author Yaw Jalik
+ */
+public class GameTable {
+    private final int id;
+    private final int maxNumOfPlayers;
+    private final SerialExecutor executor;
+    private final ConnectionContext[] seats;
+    private final ConnectionContext[] heldSeats;
+    private int numOfPlayers = 0;
+    private int numOfReservedSeats = 0;
+    private BigTwoEngine engine = null;
+    private HashedWheelTimer.Timeout turnClock = null;
+    private int turn = 0;
+    private GameRecord record = null;
+    private List<CardGameMessage> results = null;
+    private long seed = 0;
+    private int version = 0;
+    private int snapshotVersion = -1;
+
+    /**
+     * Constructor for an empty table
+     * @param id table ID, sent in every message about the table
+     * @param maxNumOfPlayers number of seats
+     * @param pool shared pool the table's executor runs on
+     */
+    public GameTable(int id, int maxNumOfPlayers, Executor pool) {
+        this.id = id;
+        this.maxNumOfPlayers = maxNumOfPlayers;
+        this.executor = new SerialExecutor(pool);
+        seats = new ConnectionContext[maxNumOfPlayers];
+        heldSeats = new ConnectionContext[maxNumOfPlayers];
+    }
+
+    /**
+     * Returns the table ID
+     * @return table ID
+     */
+    public int getID() {
+        return id;
+    }
+
+    /**
+     * Returns the executor that runs every change to this table, in order
+     * @return the table's executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the number of seats
+     * @return number of seats
+     */
+    public int getMaxNumOfPlayers() {
+        return maxNumOfPlayers;
+    }
+
+    /**
+     * Returns the number of occupied seats
+     * @return number of players
+     */
+    public int getNumOfPlayers() {
+        return numOfPlayers;
+    }
+
+    /**
+     * Check if all seats are taken, held seats included
+     * @return true if full, false otherwise
+     */
+    public boolean isFull() {
+        return numOfPlayers == maxNumOfPlayers;
+    }
+
+    /**
+     * Check if no seat is taken
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return numOfPlayers == 0;
+    }
+
+    /**
+     * Returns the number of seats promised to connections, seated or not yet
+     * Only used by the lobby, which never hands out more seats than there are
+     * @return number of reserved seats
+     */
+    public int getNumOfReservedSeats() {
+        return numOfReservedSeats;
+    }
+
+    /**
+     * Check if every seat has been promised to a connection
+     * @return true if no seat can be reserved, false otherwise
+     */
+    public boolean isFullyReserved() {
+        return numOfReservedSeats == maxNumOfPlayers;
+    }
+
+    /**
+     * Reserves a seat for a connection about to be seated
+     */
+    public void reserveSeat() {
+        numOfReservedSeats++;
+    }
+
+    /**
+     * Releases a seat reservation once its player has been unseated
+     */
+    public void releaseSeat() {
+        numOfReservedSeats--;
+    }
+
+    /**
+     * Seats a connection at the first free seat and records the seat in its
+     * context; the player has no name and is not ready yet
+     * @param context context of the new player's connection
+     * @return seat index, or -1 if the table is full
+     */
+    public int seat(ConnectionContext context) {
+        for (int i = 0; i < maxNumOfPlayers; i++) {
+            if (seats[i] == null && heldSeats[i] == null) {
+                seats[i] = context;
+                context.setSeat(i);
+                context.setName(null);
+                context.setReady(false);
+                numOfPlayers++;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Frees the seat of a connection
+     * @param context context of the leaving player's connection
+     */
+    public void unseat(ConnectionContext context) {
+        int seat = context.getSeat();
+        if (seat != -1 && seats[seat] == context) {
+            seats[seat] = null;
+            context.setSeat(-1);
+            numOfPlayers--;
+        }
+    }
+
+    /**
+     * Holds a seat for a player who is away; the seat stays taken, and the
+     * context keeps the player's name, ready flag and session token
+     * @param context context of the away player, seated here or with its seat set
+     */
+    public void hold(ConnectionContext context) {
+        int seat = context.getSeat();
+        if (seats[seat] == context) {
+            seats[seat] = null;
+        } else {
+            numOfPlayers++;
+        }
+        heldSeats[seat] = context;
+    }
+
+    /**
+     * Returns the seat of a session, held or not
+     * @param token session token
+     * @return seat index, or -1 if no player here has the token
+     */
+    public int findSession(long token) {
+        for (int i = 0; i < maxNumOfPlayers; i++) {
+            ConnectionContext context = seats[i] != null ? seats[i] : heldSeats[i];
+            if (context != null && context.getToken() == token) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gives a seat to the new connection of its player; the new context takes
+     * over the name, ready flag and session token of the old one
+     * @param seat seat index, held or not
+     * @param context context of the new connection
+     * @return context of the old connection, now unseated
+     */
+    public ConnectionContext reattach(int seat, ConnectionContext context) {
+        ConnectionContext old = seats[seat] != null ? seats[seat] : heldSeats[seat];
+        heldSeats[seat] = null;
+        seats[seat] = context;
+        context.setSeat(seat);
+        context.setName(old.getName());
+        context.setReady(old.isReady());
+        context.setToken(old.getToken());
+        old.setSeat(-1);
+        return old;
+    }
+
+    /**
+     * Check if any seat is taken by a connected player
+     * @return true if some player is connected, false if the table is empty or all seats are held
+     */
+    public boolean hasConnectedPlayers() {
+        for (int i = 0; i < maxNumOfPlayers; i++) {
+            if (seats[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Frees a held seat
+     * @param seat seat index
+     */
+    public void releaseHold(int seat) {
+        if (heldSeats[seat] != null) {
+            heldSeats[seat] = null;
+            numOfPlayers--;
+        }
+    }
+
+    /**
+     * Returns the context held for an away player
+     * @param seat seat index
+     * @return context, or null if the seat is not held
+     */
+    public ConnectionContext getHeldContext(int seat) {
+        return heldSeats[seat];
+    }
+
+    /**
+     * Returns the context of the connection at a seat
+     * @param seat seat index
+     * @return context, or null if the seat is free or held
+     */
+    public ConnectionContext getContext(int seat) {
+        return seats[seat];
+    }
+
+    /**
+     * Returns the connection at a seat
+     * @param seat seat index
+     * @return connection, or null if the seat is free
+     */
+    public Connection getConnection(int seat) {
+        return seats[seat] == null ? null : seats[seat].getConnection();
+    }
+
+    /**
+     * Returns the names of the players, indexed by seat
+     * @return array of names, null for free seats and players without a name yet
+     */
+    public String[] getNames() {
+        String[] names = new String[maxNumOfPlayers];
+        for (int i = 0; i < maxNumOfPlayers; i++) {
+            if (seats[i] != null) {
+                names[i] = seats[i].getName();
+            } else if (heldSeats[i] != null) {
+                names[i] = heldSeats[i].getName();
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Check if every seat is taken by a player who is ready
+     * @return true if a game can start, false otherwise
+     */
+    public boolean allReady() {
+        if (!isFull()) {
+            return false;
+        }
+        for (int i = 0; i < maxNumOfPlayers; i++) {
+            if (seats[i] == null || !seats[i].isReady()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the engine the server checks the moves of this table with
+     * @return engine, or null if the server does not know the rules
+     */
+    public BigTwoEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Sets the engine the server checks the moves of this table with
+     * @param engine engine, or null if the server does not know the rules
+     */
+    public void setEngine(BigTwoEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Check if a game has started and not ended yet
+     * @return true if a game is running, false otherwise (always false without an engine)
+     */
+    public boolean isGameRunning() {
+        return engine != null && engine.getActivePlayer() != -1 && !engine.endOfGame();
+    }
+
+    /**
+     * Starts a new turn; a turn clock started for an older turn sees a
+     * different number and does nothing
+     * @return number of the new turn
+     */
+    public int nextTurn() {
+        return ++turn;
+    }
+
+    /**
+     * Returns the number of the current turn
+     * @return turn number
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Check if the clock of the current turn is running
+     * @return true if running, false if stopped or up
+     */
+    public boolean hasTurnClock() {
+        return turnClock != null && !turnClock.isCancelled() && !turnClock.isExpired();
+    }
+
+    /**
+     * Replaces the clock of the current turn; the previous one is cancelled
+     * @param turnClock timeout ending the current turn, or null to stop the clock
+     */
+    public void setTurnClock(HashedWheelTimer.Timeout turnClock) {
+        if (this.turnClock != null) {
+            this.turnClock.cancel();
+        }
+        this.turnClock = turnClock;
+    }
+
+    /**
+     * Returns the seed of the deal of the current game
+     * @return seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed of the deal of the current game
+     * @param seed seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the record of the running game
+     * @return record, or null if no game is being journaled
+     */
+    public GameRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Sets the record of the running game
+     * @param record record, or null once the game has been journaled
+     */
+    public void setRecord(GameRecord record) {
+        this.record = record;
+    }
+
+    /**
+     * Starts the log of the RESULT messages of a new game, for resending
+     * them to players who come back after losing the connection
+     */
+    public void startResults() {
+        results = new ArrayList<>();
+    }
+
+    /**
+     * Adds a broadcast RESULT message to the log of the running game
+     * @param result the message
+     */
+    public void addResult(CardGameMessage result) {
+        if (results != null) {
+            results.add(result);
+        }
+    }
+
+    /**
+     * Returns the RESULT messages of the running game, oldest first
+     * @return the messages, or null if they are not known (a game restored
+     *         from a snapshot)
+     */
+    public List<CardGameMessage> getResults() {
+        return results;
+    }
+
+    /**
+     * Marks the table as changed since its last snapshot
+     */
+    public void markChanged() {
+        version++;
+    }
+
+    /**
+     * Check if the table has changed since its last snapshot
+     * @return true if a new snapshot is needed, false otherwise
+     */
+    public boolean hasChangedSinceSnapshot() {
+        return version != snapshotVersion;
+    }
+
+    /**
+     * Records that a snapshot of the current state has been taken
+     */
+    public void markSnapshotTaken() {
+        snapshotVersion = version;
+    }
+
+    /**
+     * Clears the ready states for the next game
+     */
+    public void resetReadyStates() {
+        for (int i = 0; i < maxNumOfPlayers; i++) {
+            if (seats[i] != null) {
+                seats[i].setReady(false);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@
  */
 public abstract class Hand extends CardList{
     private CardGamePlayer player;
+    private final int key;
 
     /**
      * Constructor for building a hand by setting the player and distributing cards
@@ -17,6 +18,30 @@ public abstract class Hand extends CardList{
         for (int i = 0; i < cards.size(); i++) {
             this.addCard(cards.getCard(i));
         }
+        key = size() == CardSet.size(getCardSet()) ? keyOf(getCardSet()) : HandClassifier.INVALID;
+    }
+
+    /**
+     * Returns the strength key of a set of cards
+     * Packs the number of cards (bits 9-11), the hand category (bits 6-8)
+     * and the CardSet index of the top card (bits 0-5), so a larger key is a stronger hand
+     * @param set CardSet bit mask of the cards
+     * @return strength key, or HandClassifier.INVALID if the cards are not a hand
+     */
+    public static int keyOf(long set) {
+        int strength = HandClassifier.classify(set);
+        if (strength == HandClassifier.INVALID) {
+            return HandClassifier.INVALID;
+        }
+        return (Long.bitCount(set) << 9) | strength;
+    }
+
+    /**
+     * Returns the strength key computed when the hand was built
+     * @return strength key, or HandClassifier.INVALID if the hand is not valid
+     */
+    public int getKey() {
+        return key;
     }
 
     /**
@@ -44,19 +69,21 @@ public abstract class Hand extends CardList{
                 }
             }
             // Swap
-            Card temp = getCard(i);
-            setCard(i, min);
-            setCard(minIdx, temp);
+            swapCards(i, minIdx);
         }
     }
 
     /**
      * Returns the top card in the hand
-     * Overridden in FullHouse and Quad classes
+     * Taken from the strength key for valid hands, so FullHouse and Quad
+     * return the highest card of their triple or quad
      * @return top card
      */
     public Card getTopCard() {
-        // Overridden in FullHouse and Quad
+        if (key != HandClassifier.INVALID) {
+            return CardSet.card(HandClassifier.topCard(key));
+        }
+
         Card topCard = getCard(0);
         for (int i = 1; i < size(); i++) {
             Card currentCard = getCard(i);
@@ -70,16 +97,13 @@ public abstract class Hand extends CardList{
 
     /**
      * Check if this hand beats another hand
-     * Compares top cards by default, will be overidden if necessary
+     * Compares the strength keys: a higher category wins, then a higher top card
+     * Neither hand is sorted or otherwise changed
      * @param hand the hand to be checked
      * @return true if this beats the hand, false otherwise
      */
     public boolean beats(Hand hand) {
-        // Overridden
-        this.sort();
-        hand.sort();
-
-        return this.getTopCard().compareTo(hand.getTopCard()) > 0;
+        return this.key > hand.key;
     }
 
     /**
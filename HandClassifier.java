@@ -0,0 +1,182 @@
+/**
+ * Classifies a set of cards (a CardSet bit mask) into a BigTwo hand
+ * Returns the hand type and its strength packed into one int:
+ * the category in the high bits and the bit index of the top card in the low 6 bits
+ * Five-card hands are looked up in a table over all 2,598,960 combinations,
+ * indexed with the combinatorial number system, so classifying never allocates
+ * The table is built the first time a five-card hand is classified
+ * @author Yaw Jalik
+ */
+public final class HandClassifier {
+    /**
+     * Returned when the cards do not form a valid hand
+     */
+    public static final int INVALID = -1;
+
+    // Hand categories, weakest first
+    public static final int SINGLE = 0;
+    public static final int PAIR = 1;
+    public static final int TRIPLE = 2;
+    public static final int STRAIGHT = 3;
+    public static final int FLUSH = 4;
+    public static final int FULL_HOUSE = 5;
+    public static final int QUAD = 6;
+    public static final int STRAIGHT_FLUSH = 7;
+
+    /**
+     * Number of five-card combinations of a 52-card deck
+     */
+    public static final int NUM_OF_FIVE_CARD_HANDS = 2598960;
+
+    private static final String[] TYPES = {
+            "Single", "Pair", "Triple", "Straight", "Flush", "FullHouse", "Quad", "StraightFlush"
+    };
+
+    // BINOMIAL[n][k] = n choose k
+    private static final int[][] BINOMIAL = new int[52][6];
+
+    static {
+        for (int n = 0; n < 52; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k < 6; k++) {
+                BINOMIAL[n][k] = n == 0 ? 0 : BINOMIAL[n-1][k-1] + BINOMIAL[n-1][k];
+            }
+        }
+    }
+
+    private HandClassifier() {
+    }
+
+    /**
+     * Classifies a set of cards
+     * @param set CardSet bit mask of the cards
+     * @return packed category and top card, or INVALID if the cards are not a hand
+     */
+    public static int classify(long set) {
+        switch (Long.bitCount(set)) {
+            case 1:
+                return strength(SINGLE, CardSet.lowest(set));
+            case 2:
+            case 3:
+                // All cards must share the rank of the lowest card
+                int low = CardSet.lowest(set);
+                int high = CardSet.highest(set);
+                if (low >> 2 != high >> 2) {
+                    return INVALID;
+                }
+                return strength(Long.bitCount(set) == 2 ? PAIR : TRIPLE, high);
+            case 5:
+                return FiveCardTable.TABLE[indexOf(set)];
+            default:
+                return INVALID;
+        }
+    }
+
+    /**
+     * Returns the category of a classified hand
+     * @param strength value returned by classify
+     * @return hand category
+     */
+    public static int category(int strength) {
+        return strength >> 6;
+    }
+
+    /**
+     * Returns the bit index of the top card of a classified hand
+     * @param strength value returned by classify
+     * @return CardSet bit index of the top card
+     */
+    public static int topCard(int strength) {
+        return strength & 63;
+    }
+
+    /**
+     * Returns the name of a hand category, matching Hand.getType()
+     * @param category hand category
+     * @return name of the category
+     */
+    public static String typeOf(int category) {
+        return TYPES[category];
+    }
+
+    /**
+     * Returns the number of cards in hands of a category
+     * @param category hand category
+     * @return number of cards
+     */
+    public static int sizeOf(int category) {
+        return category < STRAIGHT ? category + 1 : 5;
+    }
+
+    /**
+     * Returns the position of a five-card set in the lookup table (its colex rank)
+     * @param set CardSet bit mask with exactly five cards
+     * @return index between 0 and NUM_OF_FIVE_CARD_HANDS - 1
+     */
+    static int indexOf(long set) {
+        int index = 0;
+        int k = 1;
+        for (long s = set; s != 0; s &= s - 1) {
+            index += BINOMIAL[Long.numberOfTrailingZeros(s)][k++];
+        }
+        return index;
+    }
+
+    private static int strength(int category, int topCard) {
+        return (category << 6) | topCard;
+    }
+
+    /**
+     * Evaluates five distinct cards given their bit indices in increasing order
+     * @return packed category and top card, or INVALID
+     */
+    private static int evaluate(int c0, int c1, int c2, int c3, int c4) {
+        int r0 = c0 >> 2, r1 = c1 >> 2, r2 = c2 >> 2, r3 = c3 >> 2, r4 = c4 >> 2;
+        int suit = c0 & 3;
+        boolean flush = (c1 & 3) == suit && (c2 & 3) == suit && (c3 & 3) == suit && (c4 & 3) == suit;
+        boolean straight = r1 == r0 + 1 && r2 == r0 + 2 && r3 == r0 + 3 && r4 == r0 + 4;
+
+        if (straight && flush) {
+            return strength(STRAIGHT_FLUSH, c4);
+        }
+        if (r0 == r3) {
+            return strength(QUAD, c3);
+        }
+        if (r1 == r4) {
+            return strength(QUAD, c4);
+        }
+        if (r0 == r2 && r3 == r4) {
+            return strength(FULL_HOUSE, c2);
+        }
+        if (r0 == r1 && r2 == r4) {
+            return strength(FULL_HOUSE, c4);
+        }
+        if (flush) {
+            return strength(FLUSH, c4);
+        }
+        if (straight) {
+            return strength(STRAIGHT, c4);
+        }
+        return INVALID;
+    }
+
+    /**
+     * Lazily built lookup table, initialized on first use by the class loader
+     */
+    private static final class FiveCardTable {
+        static final int[] TABLE = build();
+
+        private static int[] build() {
+            // Nested loops over the largest card first visit the combinations in colex order
+            int[] table = new int[NUM_OF_FIVE_CARD_HANDS];
+            int index = 0;
+            for (int c4 = 4; c4 < 52; c4++)
+                for (int c3 = 3; c3 < c4; c3++)
+                    for (int c2 = 2; c2 < c3; c2++)
+                        for (int c1 = 1; c1 < c2; c1++)
+                            for (int c0 = 0; c0 < c1; c0++)
+                                table[index++] = evaluate(c0, c1, c2, c3, c4);
+            return table;
+        }
+    }
+}
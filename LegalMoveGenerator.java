@@ -0,0 +1,291 @@
+/**
+ * Lists the legal moves of a player against the hand on the table
+ * Moves are CardSet bit masks enumerated straight from the player's card set:
+ * singles bit by bit, pairs and triples within each rank, and five-card hands
+ * by their shape (straights rank by rank, flushes as 5-card combinations of a suit
+ * using Gosper's hack, full houses and quads from same-rank groups)
+ * No CardList or Hand objects are created while generating
+ * @author Yaw Jalik
+ */
+public final class LegalMoveGenerator {
+    /**
+     * The move that passes the turn (no cards)
+     */
+    public static final long PASS = CardSet.EMPTY;
+
+    // One bit per rank for the cards of the Diamond suit
+    private static final long DIAMONDS = 0x1111111111111L;
+
+    /**
+     * Receives the moves found by the generator
+     */
+    public interface MoveVisitor {
+        /**
+         * Called once for every legal move
+         * @param move CardSet bit mask of the cards played, or PASS
+         * @param key strength key of the move (see Hand.keyOf), or HandClassifier.INVALID for PASS
+         */
+        void visit(long move, int key);
+    }
+
+    private LegalMoveGenerator() {
+    }
+
+    /**
+     * Generates the legal moves of a player given the last hand on the table
+     * @param player the player to move
+     * @param lastHand last hand on the table, or null if no hand has been played this game
+     * @param visitor receives every legal move
+     */
+    public static void generate(CardGamePlayer player, Hand lastHand, MoveVisitor visitor) {
+        if (lastHand == null) {
+            // First move of the game must include the 3 of Diamonds
+            generate(player.getCardSet(), HandClassifier.INVALID, CardSet.THREE_OF_DIAMONDS, false, visitor);
+        }
+        else if (lastHand.getPlayer() == player) {
+            // Everyone else passed, so the player leads with any hand
+            generate(player.getCardSet(), HandClassifier.INVALID, CardSet.EMPTY, false, visitor);
+        }
+        else {
+            generate(player.getCardSet(), lastHand.getKey(), CardSet.EMPTY, true, visitor);
+        }
+    }
+
+    /**
+     * Generates legal moves from a set of cards
+     * Moves are visited grouped by number of cards, with pass last
+     * @param hand CardSet bit mask of the cards held
+     * @param tableKey strength key of the hand to beat, or HandClassifier.INVALID to lead with any hand
+     * @param required cards that every move must contain (e.g. CardSet.THREE_OF_DIAMONDS)
+     * @param canPass whether passing is allowed
+     * @param visitor receives every legal move
+     */
+    public static void generate(long hand, int tableKey, long required, boolean canPass, MoveVisitor visitor) {
+        if (tableKey == HandClassifier.INVALID) {
+            generateSingles(hand, tableKey, required, visitor);
+            generateSameRank(hand, 2, tableKey, required, visitor);
+            generateSameRank(hand, 3, tableKey, required, visitor);
+            generateFiveCards(hand, tableKey, required, visitor);
+        }
+        else {
+            // Only hands with the same number of cards can beat the table
+            switch (tableKey >> 9) {
+                case 1:
+                    generateSingles(hand, tableKey, required, visitor);
+                    break;
+                case 2:
+                case 3:
+                    generateSameRank(hand, tableKey >> 9, tableKey, required, visitor);
+                    break;
+                case 5:
+                    generateFiveCards(hand, tableKey, required, visitor);
+                    break;
+            }
+        }
+
+        if (canPass) {
+            visitor.visit(PASS, HandClassifier.INVALID);
+        }
+    }
+
+    /**
+     * Checks a single move with the same rules the generator applies
+     * @param hand CardSet bit mask of the cards held
+     * @param move CardSet bit mask of the cards played, or PASS
+     * @param tableKey strength key of the hand to beat, or HandClassifier.INVALID to lead
+     * @param required cards that every move must contain
+     * @param canPass whether passing is allowed
+     * @return true if the move is legal, false otherwise
+     */
+    public static boolean isLegal(long hand, long move, int tableKey, long required, boolean canPass) {
+        if (move == PASS) {
+            return canPass;
+        }
+        if (!CardSet.containsAll(hand, move) || (move & required) != required) {
+            return false;
+        }
+        int key = Hand.keyOf(move);
+        if (key == HandClassifier.INVALID) {
+            return false;
+        }
+        return tableKey == HandClassifier.INVALID || (key >> 9 == tableKey >> 9 && key > tableKey);
+    }
+
+    /**
+     * Counts the legal moves from a set of cards, pass included if allowed
+     * @param hand CardSet bit mask of the cards held
+     * @param tableKey strength key of the hand to beat, or HandClassifier.INVALID to lead
+     * @param required cards that every move must contain
+     * @param canPass whether passing is allowed
+     * @return number of legal moves
+     */
+    public static int count(long hand, int tableKey, long required, boolean canPass) {
+        int[] count = new int[1];
+        generate(hand, tableKey, required, canPass, (move, key) -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * Converts a move into the indices of its cards in a player's list of cards,
+     * in the form expected by CardGame.makeMove
+     * @param cards the player's cards in hand
+     * @param move CardSet bit mask of the move
+     * @return indices of the cards, or null for PASS
+     */
+    public static int[] toCardIdx(CardList cards, long move) {
+        if (move == PASS) {
+            return null;
+        }
+        int[] cardIdx = new int[CardSet.size(move)];
+        int n = 0;
+        for (int i = 0; i < cards.size() && n < cardIdx.length; i++) {
+            if (CardSet.contains(move, cards.getCard(i))) {
+                cardIdx[n++] = i;
+            }
+        }
+        return cardIdx;
+    }
+
+    private static void generateSingles(long hand, int tableKey, long required, MoveVisitor visitor) {
+        for (long s = hand; s != 0; s &= s - 1) {
+            long move = s & -s;
+            offer(move, Hand.keyOf(move), tableKey, required, visitor);
+        }
+    }
+
+    /**
+     * Pairs and triples only use cards of one rank, so only the four bits of
+     * each rank need to be searched
+     */
+    private static void generateSameRank(long hand, int size, int tableKey, long required, MoveVisitor visitor) {
+        for (int rank = 0; rank < 13; rank++) {
+            long cardsOfRank = cardsOfRank(hand, rank);
+            if (Long.bitCount(cardsOfRank) < size) {
+                continue;
+            }
+            // Visit every subset of the cards of this rank with the right size
+            for (long sub = cardsOfRank; sub != 0; sub = (sub - 1) & cardsOfRank) {
+                if (Long.bitCount(sub) == size) {
+                    offer(sub, Hand.keyOf(sub), tableKey, required, visitor);
+                }
+            }
+        }
+    }
+
+    private static void generateFiveCards(long hand, int tableKey, long required, MoveVisitor visitor) {
+        if (Long.bitCount(hand) < 5) {
+            return;
+        }
+        generateStraights(hand, tableKey, required, visitor);
+        generateFlushes(hand, tableKey, required, visitor);
+        generateFullHousesAndQuads(hand, tableKey, required, visitor);
+    }
+
+    /**
+     * Straights and straight flushes: one card from each of five consecutive ranks
+     */
+    private static void generateStraights(long hand, int tableKey, long required, MoveVisitor visitor) {
+        for (int low = 0; low + 5 <= 13; low++) {
+            long r0 = cardsOfRank(hand, low), r1 = cardsOfRank(hand, low + 1), r2 = cardsOfRank(hand, low + 2),
+                    r3 = cardsOfRank(hand, low + 3), r4 = cardsOfRank(hand, low + 4);
+            if (r0 == 0 || r1 == 0 || r2 == 0 || r3 == 0 || r4 == 0) {
+                continue;
+            }
+            for (long a = r0; a != 0; a &= a - 1)
+                for (long b = r1; b != 0; b &= b - 1)
+                    for (long c = r2; c != 0; c &= c - 1)
+                        for (long d = r3; d != 0; d &= d - 1)
+                            for (long e = r4; e != 0; e &= e - 1) {
+                                long move = (a & -a) | (b & -b) | (c & -c) | (d & -d) | (e & -e);
+                                offer(move, Hand.keyOf(move), tableKey, required, visitor);
+                            }
+        }
+    }
+
+    /**
+     * Flushes: every five cards of one suit, leaving straight flushes to generateStraights
+     */
+    private static void generateFlushes(long hand, int tableKey, long required, MoveVisitor visitor) {
+        for (int suit = 0; suit < 4; suit++) {
+            long cardsOfSuit = hand & (DIAMONDS << suit);
+            int n = Long.bitCount(cardsOfSuit);
+            if (n < 5) {
+                continue;
+            }
+            // Walk the 5-of-n combinations as n-bit patterns and deposit each onto the suit's cards
+            long limit = 1L << n;
+            for (long pattern = 0x1F; pattern < limit; pattern = nextCombination(pattern)) {
+                long move = deposit(pattern, cardsOfSuit);
+                int key = Hand.keyOf(move);
+                if (HandClassifier.category(key & 511) == HandClassifier.FLUSH) {
+                    offer(move, key, tableKey, required, visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Full houses (a triple and a pair of another rank) and quads (four of a rank and any other card)
+     */
+    private static void generateFullHousesAndQuads(long hand, int tableKey, long required, MoveVisitor visitor) {
+        for (int rank = 0; rank < 13; rank++) {
+            long cardsOfRank = cardsOfRank(hand, rank);
+            int n = Long.bitCount(cardsOfRank);
+            if (n == 4) {
+                for (long rest = hand & ~cardsOfRank; rest != 0; rest &= rest - 1) {
+                    long move = cardsOfRank | (rest & -rest);
+                    offer(move, Hand.keyOf(move), tableKey, required, visitor);
+                }
+            }
+            if (n < 3) {
+                continue;
+            }
+            for (long triple = cardsOfRank; triple != 0; triple = (triple - 1) & cardsOfRank) {
+                if (Long.bitCount(triple) != 3) {
+                    continue;
+                }
+                for (int other = 0; other < 13; other++) {
+                    long cardsOfOther = other == rank ? 0 : cardsOfRank(hand, other);
+                    for (long pair = cardsOfOther; pair != 0; pair = (pair - 1) & cardsOfOther) {
+                        if (Long.bitCount(pair) == 2) {
+                            long move = triple | pair;
+                            offer(move, Hand.keyOf(move), tableKey, required, visitor);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static long cardsOfRank(long hand, int rank) {
+        return hand & (0xFL << (rank * 4));
+    }
+
+    private static void offer(long move, int key, int tableKey, long required, MoveVisitor visitor) {
+        if (key != HandClassifier.INVALID && key > tableKey && (move & required) == required) {
+            visitor.visit(move, key);
+        }
+    }
+
+    /**
+     * Gosper's hack: the next larger number with the same number of set bits
+     */
+    private static long nextCombination(long x) {
+        long lowest = x & -x;
+        long ripple = x + lowest;
+        return ripple | (((x ^ ripple) >>> 2) / lowest);
+    }
+
+    /**
+     * Maps bit i of pattern onto the i-th lowest card of cards
+     */
+    private static long deposit(long pattern, long cards) {
+        long result = 0;
+        for (long h = cards; pattern != 0; h &= h - 1, pattern >>>= 1) {
+            if ((pattern & 1) != 0) {
+                result |= h & -h;
+            }
+        }
+        return result;
+    }
+}
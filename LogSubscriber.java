@@ -0,0 +1,24 @@
+/**
+ * Receives the log lines of a RingBufferLogger
+ * All calls come from the logger's single writer thread, in logging order
+ * @author Yaw Jalik
+ */
+public interface LogSubscriber {
+    /**
+     * Called for every logged line
+     * @param timeMillis time the line was logged, in milliseconds since the epoch
+     * @param message the logged line
+     */
+    void log(long timeMillis, String message);
+
+    /**
+     * Called when the writer has caught up with the loggers, so buffered
+     * lines can be written out
+     */
+    void flush();
+
+    /**
+     * Called once when the logger is closed
+     */
+    void close();
+}
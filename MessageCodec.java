@@ -0,0 +1,429 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes CardGameMessages as frame payloads, in a compact binary format or
+ * with Java serialization as a fallback for peers that only speak that
+ * The first byte of a payload tells the formats apart: binary payloads start
+ * with their version number, Java serialization streams with 0xAC
+ * <p>
+ * Binary format, version 2 (version 1 is the same without seeded deals, and
+ * is still read):
+ * <pre>
+ * version   1 byte
+ * type      1 byte
+ * tableID   zigzag varint
+ * playerID  zigzag varint
+ * data      depends on the type:
+ *   PLAYER_LIST  varint count, then count strings
+ *   JOIN, QUIT, MSG  string
+ *   FULL, READY, HEARTBEAT, REJECT  nothing
+ *   START    1 byte kind, then
+ *              for a Deck (0) or a BigTwoDeck (1): varint count, then one byte per card
+ *              for a seeded deal (2): varint deal version, then the 8-byte seed
+ *   MOVE     varint (count + 1, 0 for a pass), then varint card indices
+ *   RESULT   varint (count + 1, 0 for a pass), then 1 byte hand category and one byte per card
+ *   SESSION, RESUME  varint (count + 1, 0 for null), then 8 bytes per value
+ * </pre>
+ * Strings are a varint (byte length + 1, 0 for null) followed by UTF-8 bytes
+ * A card byte is its CardSet index
+ * @author Yaw Jalik
+ */
+public final class MessageCodec {
+    /**
+     * The wire formats a message can be encoded in
+     */
+    public enum Format {
+        /**
+         * The compact binary format of this class
+         */
+        BINARY,
+        /**
+         * Java serialization of the whole message object
+         */
+        JAVA_SERIALIZATION
+    }
+
+    /**
+     * Version of the binary format, written as the first byte of a payload
+     */
+    public static final int VERSION = 2;
+
+    // Kinds of START data
+    private static final int START_DECK = 0;
+    private static final int START_BIG_TWO_DECK = 1;
+    private static final int START_DEAL = 2;
+
+    private static final int JAVA_STREAM_MAGIC_BYTE = 0xAC;
+
+    // Classes a Java-serialized message may contain; anything else is refused
+    private static final ObjectInputFilter JAVA_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=8;maxarray=1024;CardGameMessage;GameMessage;Deck;BigTwoDeck;CardList;"
+                    + "Card;BigTwoCard;java.util.ArrayList;java.lang.String;java.lang.Object;"
+                    + "java.lang.Number;java.lang.Integer;!*");
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Returns the format of a payload
+     * @param payload buffer holding the payload
+     * @param offset start of the payload
+     * @return format of the payload
+     */
+    public static Format formatOf(byte[] payload, int offset) {
+        return (payload[offset] & 0xFF) == JAVA_STREAM_MAGIC_BYTE ? Format.JAVA_SERIALIZATION : Format.BINARY;
+    }
+
+    /**
+     * Appends the payload of a message to a stream
+     * Messages whose data does not fit the binary format of their type are
+     * written with Java serialization instead
+     * @param out stream to be written to
+     * @param message message to be encoded
+     * @param format preferred format
+     * @throws IOException if the message cannot be serialized
+     */
+    public static void encode(ByteArrayOutputStream out, CardGameMessage message, Format format) throws IOException {
+        if (format == Format.BINARY && canEncodeBinary(message)) {
+            writeBinary(out, message);
+        } else {
+            ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeObject(message);
+            oos.close();
+        }
+    }
+
+    /**
+     * Decodes a payload of either format
+     * @param payload buffer holding the payload
+     * @param offset start of the payload
+     * @param length length of the payload
+     * @return decoded message
+     * @throws IOException if the payload is not a valid message
+     */
+    public static CardGameMessage decode(byte[] payload, int offset, int length) throws IOException {
+        if (formatOf(payload, offset) == Format.JAVA_SERIALIZATION) {
+            return readJava(payload, offset, length);
+        }
+        try {
+            return readBinary(ByteBuffer.wrap(payload, offset, length));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new StreamCorruptedException("Truncated message");
+        }
+    }
+
+    private static boolean canEncodeBinary(CardGameMessage message) {
+        Object data = message.getData();
+        switch (message.getType()) {
+            case CardGameMessage.PLAYER_LIST:
+                return data instanceof String[];
+            case CardGameMessage.JOIN:
+            case CardGameMessage.QUIT:
+            case CardGameMessage.MSG:
+                return data == null || data instanceof String;
+            case CardGameMessage.FULL:
+            case CardGameMessage.READY:
+            case CardGameMessage.HEARTBEAT:
+            case CardGameMessage.REJECT:
+                return data == null;
+            case CardGameMessage.START:
+                return data instanceof Deck || isDeal(data);
+            case CardGameMessage.MOVE:
+                return data == null || data instanceof int[];
+            case CardGameMessage.RESULT:
+                return data == null || isCompactMove(data);
+            case CardGameMessage.SESSION:
+            case CardGameMessage.RESUME:
+                return data == null || data instanceof long[];
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isDeal(Object data) {
+        return data instanceof long[] && ((long[]) data).length == 2
+                && ((long[]) data)[1] >= 0 && ((long[]) data)[1] <= Integer.MAX_VALUE;
+    }
+
+    private static boolean isCompactMove(Object data) {
+        if (!(data instanceof int[]) || ((int[]) data).length < 2) {
+            return false;
+        }
+        int[] move = (int[]) data;
+        if (move[0] < HandClassifier.SINGLE || move[0] > HandClassifier.STRAIGHT_FLUSH) {
+            return false;
+        }
+        for (int i = 1; i < move.length; i++) {
+            if (move[i] < 0 || move[i] >= 52) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeBinary(ByteArrayOutputStream out, CardGameMessage message) {
+        out.write(VERSION);
+        out.write(message.getType());
+        writeVarint(out, zigzag(message.getTableID()));
+        writeVarint(out, zigzag(message.getPlayerID()));
+
+        Object data = message.getData();
+        switch (message.getType()) {
+            case CardGameMessage.PLAYER_LIST:
+                String[] names = (String[]) data;
+                writeVarint(out, names.length);
+                for (String name : names) {
+                    writeString(out, name);
+                }
+                break;
+            case CardGameMessage.JOIN:
+            case CardGameMessage.QUIT:
+            case CardGameMessage.MSG:
+                writeString(out, (String) data);
+                break;
+            case CardGameMessage.START:
+                if (data instanceof long[]) {
+                    long[] deal = (long[]) data;
+                    out.write(START_DEAL);
+                    writeVarint(out, (int) deal[1]);
+                    writeLong(out, deal[0]);
+                    break;
+                }
+                Deck deck = (Deck) data;
+                out.write(deck instanceof BigTwoDeck ? START_BIG_TWO_DECK : START_DECK);
+                writeVarint(out, deck.size());
+                for (int i = 0; i < deck.size(); i++) {
+                    out.write(CardSet.indexOf(deck.getCard(i)));
+                }
+                break;
+            case CardGameMessage.MOVE:
+                int[] cardIdx = (int[]) data;
+                if (cardIdx == null) {
+                    writeVarint(out, 0);
+                } else {
+                    writeVarint(out, cardIdx.length + 1);
+                    for (int idx : cardIdx) {
+                        writeVarint(out, idx);
+                    }
+                }
+                break;
+            case CardGameMessage.RESULT:
+                int[] move = (int[]) data;
+                if (move == null) {
+                    writeVarint(out, 0);
+                } else {
+                    writeVarint(out, move.length);
+                    for (int value : move) {
+                        out.write(value);
+                    }
+                }
+                break;
+            case CardGameMessage.SESSION:
+            case CardGameMessage.RESUME:
+                long[] values = (long[]) data;
+                if (values == null) {
+                    writeVarint(out, 0);
+                } else {
+                    writeVarint(out, values.length + 1);
+                    for (long value : values) {
+                        writeLong(out, value);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static CardGameMessage readBinary(ByteBuffer in) throws IOException {
+        int version = in.get() & 0xFF;
+        if (version < 1 || version > VERSION) {
+            throw new StreamCorruptedException("Unsupported message version " + version);
+        }
+        int type = in.get() & 0xFF;
+        int tableID = unzigzag(readVarint(in));
+        int playerID = unzigzag(readVarint(in));
+
+        Object data = null;
+        switch (type) {
+            case CardGameMessage.PLAYER_LIST:
+                String[] names = new String[readCount(in)];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = readString(in);
+                }
+                data = names;
+                break;
+            case CardGameMessage.JOIN:
+            case CardGameMessage.QUIT:
+            case CardGameMessage.MSG:
+                data = readString(in);
+                break;
+            case CardGameMessage.FULL:
+            case CardGameMessage.READY:
+            case CardGameMessage.HEARTBEAT:
+            case CardGameMessage.REJECT:
+                break;
+            case CardGameMessage.START:
+                int kind = in.get() & 0xFF;
+                if (kind == START_DEAL) {
+                    int dealVersion = readVarint(in);
+                    data = new long[] {in.getLong(), dealVersion};
+                    break;
+                }
+                if (kind > START_BIG_TWO_DECK) {
+                    throw new StreamCorruptedException("Bad start kind " + kind);
+                }
+                boolean bigTwo = kind == START_BIG_TWO_DECK;
+                Deck deck = bigTwo ? new BigTwoDeck() : new Deck();
+                deck.removeAllCards();
+                int size = readCount(in);
+                for (int i = 0; i < size; i++) {
+                    int index = in.get() & 0xFF;
+                    if (index >= 52) {
+                        throw new StreamCorruptedException("Bad card " + index);
+                    }
+                    deck.addCard(bigTwo ? CardSet.card(index)
+                            : new Card(CardSet.suitOf(index), CardSet.rankOf(index)));
+                }
+                data = deck;
+                break;
+            case CardGameMessage.MOVE:
+                int count = readCount(in);
+                if (count > 0) {
+                    int[] cardIdx = new int[count - 1];
+                    for (int i = 0; i < cardIdx.length; i++) {
+                        cardIdx[i] = readVarint(in);
+                    }
+                    data = cardIdx;
+                }
+                break;
+            case CardGameMessage.RESULT:
+                int moveLength = readCount(in);
+                if (moveLength > 0) {
+                    int[] move = new int[moveLength];
+                    move[0] = in.get() & 0xFF;
+                    if (move[0] > HandClassifier.STRAIGHT_FLUSH) {
+                        throw new StreamCorruptedException("Bad hand category " + move[0]);
+                    }
+                    for (int i = 1; i < move.length; i++) {
+                        move[i] = in.get() & 0xFF;
+                        if (move[i] >= 52) {
+                            throw new StreamCorruptedException("Bad card " + move[i]);
+                        }
+                    }
+                    data = move;
+                }
+                break;
+            case CardGameMessage.SESSION:
+            case CardGameMessage.RESUME:
+                int numOfValues = readCount(in);
+                if (numOfValues > 0) {
+                    long[] values = new long[numOfValues - 1];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = in.getLong();
+                    }
+                    data = values;
+                }
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown message type " + type);
+        }
+        if (in.hasRemaining()) {
+            throw new StreamCorruptedException("Trailing bytes after message type " + type);
+        }
+        return new CardGameMessage(type, tableID, playerID, data);
+    }
+
+    private static CardGameMessage readJava(byte[] payload, int offset, int length) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload, offset, length));
+        ois.setObjectInputFilter(JAVA_FILTER);
+        try {
+            return (CardGameMessage) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException | InvalidClassException ex) {
+            throw new StreamCorruptedException("Not a CardGameMessage: " + ex.getMessage());
+        }
+    }
+
+    // The primitives below are shared with GameRecord; the readers work on
+    // any ByteBuffer, mapped files included
+
+    static void writeString(ByteArrayOutputStream out, String s) {
+        if (s == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static String readString(ByteBuffer in) throws IOException {
+        int length = readCount(in);
+        if (length == 0) {
+            return null;
+        }
+        if (!in.hasArray()) {
+            byte[] bytes = new byte[length - 1];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        return s;
+    }
+
+    /**
+     * Reads a count or length, which can never be more than the bytes left
+     */
+    static int readCount(ByteBuffer in) throws IOException {
+        int count = readVarint(in);
+        if (count < 0 || count > in.remaining() + 1) {
+            throw new StreamCorruptedException("Bad length " + count);
+        }
+        return count;
+    }
+
+    static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Varint too long");
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Length-prefixed framing of CardGameMessages, shared by the server and the client
+ * A frame is a 4-byte big-endian payload length followed by the payload,
+ * which is the message encoded by MessageCodec
+ * @author Yaw Jalik
+ */
+public final class MessageFraming {
+    /**
+     * Size of the length prefix
+     */
+    public static final int HEADER_SIZE = 4;
+
+    /**
+     * Largest payload accepted; anything bigger is treated as a broken stream
+     */
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private MessageFraming() {
+    }
+
+    /**
+     * Encodes a message into a complete frame, length prefix included
+     * @param message message to be encoded
+     * @param format wire format of the payload
+     * @return buffer holding the frame, ready to be written
+     * @throws IOException if the message cannot be serialized
+     */
+    public static ByteBuffer encodeFrame(CardGameMessage message, MessageCodec.Format format) throws IOException {
+        FrameBuffer bytes = new FrameBuffer(format == MessageCodec.Format.BINARY ? 64 : 256);
+        bytes.startFrame();
+        MessageCodec.encode(bytes, message, format);
+        bytes.endFrame();
+        return ByteBuffer.wrap(bytes.array(), 0, bytes.size()).slice();
+    }
+
+    /**
+     * Decodes the payload of a frame, whichever format it is in
+     * @param payload buffer holding the payload
+     * @param offset start of the payload
+     * @param length length of the payload
+     * @return decoded message
+     * @throws IOException if the payload is not a valid message
+     */
+    public static CardGameMessage decode(byte[] payload, int offset, int length) throws IOException {
+        return MessageCodec.decode(payload, offset, length);
+    }
+
+    /**
+     * Checks a length prefix read from a stream
+     * @param length payload length
+     * @throws StreamCorruptedException if the length is out of range
+     */
+    public static void checkLength(int length) throws StreamCorruptedException {
+        if (length <= 0 || length > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Bad frame length " + length);
+        }
+    }
+
+    /**
+     * Writes a message as one frame to a blocking stream and flushes it
+     * @param out stream to be written to
+     * @param message message to be written
+     * @param format wire format of the payload
+     * @throws IOException if writing fails
+     */
+    public static void writeMessage(DataOutputStream out, CardGameMessage message, MessageCodec.Format format)
+            throws IOException {
+        ByteBuffer frame = encodeFrame(message, format);
+        out.write(frame.array(), 0, frame.limit());
+        out.flush();
+    }
+
+    /**
+     * Reads one frame from a blocking stream
+     * @param in stream to be read from
+     * @return decoded message
+     * @throws IOException if reading fails or the frame is invalid
+     */
+    public static CardGameMessage readMessage(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkLength(length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return decode(payload, 0, length);
+    }
+
+    /**
+     * Growable buffer a frame is encoded into, with direct access to its bytes
+     */
+    static class FrameBuffer extends ByteArrayOutputStream {
+        FrameBuffer(int size) {
+            super(size);
+        }
+
+        /**
+         * Empties the buffer and reserves room for the length prefix
+         */
+        void startFrame() {
+            reset();
+            count = HEADER_SIZE;
+        }
+
+        /**
+         * Fills in the length prefix once the payload has been written
+         */
+        void endFrame() {
+            int length = count - HEADER_SIZE;
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+        }
+
+        /**
+         * Returns the backing array, valid up to size()
+         * @return backing array
+         */
+        byte[] array() {
+            return buf;
+        }
+
+        /**
+         * Replaces the backing array by a smaller one if it has grown too big
+         * @param retainedSize largest array kept
+         * @param initialSize size of the replacement array
+         */
+        void shrink(int retainedSize, int initialSize) {
+            if (buf.length > retainedSize) {
+                buf = new byte[initialSize];
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Framed CardGameMessages over a pair of blocking streams, such as a client socket
+ * Every message is its own frame, so no state outlives a message, and both
+ * directions reuse one buffer that goes back to its normal size after an
+ * unusually large frame; memory per stream stays flat however long it lives
+ * @author Yaw Jalik
+ */
+public class MessageStream {
+    /**
+     * Normal size of the read and write buffers
+     */
+    static final int INITIAL_BUFFER_SIZE = 8192;
+
+    /**
+     * Largest buffer kept after a frame; bigger ones are dropped once used
+     */
+    static final int RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private final DataInputStream in;
+    private final OutputStream out;
+    private byte[] readBuffer = new byte[INITIAL_BUFFER_SIZE];
+    private final MessageFraming.FrameBuffer writeBuffer = new MessageFraming.FrameBuffer(INITIAL_BUFFER_SIZE);
+
+    /**
+     * Constructor for a message stream
+     * @param in stream the frames are read from
+     * @param out stream the frames are written to
+     */
+    public MessageStream(InputStream in, OutputStream out) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        this.out = new BufferedOutputStream(out);
+    }
+
+    /**
+     * Reads the next message, blocking until it has arrived
+     * Only one thread may read
+     * @return the decoded message
+     * @throws IOException if reading fails or the frame is invalid
+     */
+    public CardGameMessage read() throws IOException {
+        int length = in.readInt();
+        MessageFraming.checkLength(length);
+        if (length > readBuffer.length) {
+            readBuffer = new byte[length];
+        }
+        in.readFully(readBuffer, 0, length);
+        CardGameMessage message = MessageFraming.decode(readBuffer, 0, length);
+        if (readBuffer.length > RETAINED_BUFFER_SIZE) {
+            readBuffer = new byte[INITIAL_BUFFER_SIZE];
+        }
+        return message;
+    }
+
+    /**
+     * Writes a message as one frame and flushes it
+     * @param message message to be written
+     * @param format wire format of the payload
+     * @throws IOException if writing fails
+     */
+    public synchronized void write(CardGameMessage message, MessageCodec.Format format) throws IOException {
+        try {
+            writeBuffer.startFrame();
+            MessageCodec.encode(writeBuffer, message, format);
+            writeBuffer.endFrame();
+            out.write(writeBuffer.array(), 0, writeBuffer.size());
+            out.flush();
+        } finally {
+            writeBuffer.shrink(RETAINED_BUFFER_SIZE, INITIAL_BUFFER_SIZE);
+        }
+    }
+}
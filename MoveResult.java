@@ -0,0 +1,84 @@
+/**
+ * Models the outcome of a move checked by a BigTwoEngine
+ * @author Yaw Jalik
+ */
+public class MoveResult {
+    /**
+     * The move broke the rules and was not applied
+     */
+    public static final int ILLEGAL = 0;
+    /**
+     * The player passed
+     */
+    public static final int PASS = 1;
+    /**
+     * The player's hand was put on the table
+     */
+    public static final int PLAYED = 2;
+
+    private final int type;
+    private final int playerIdx;
+    private final Hand hand;
+
+    /**
+     * Constructor for a move result
+     * @param type ILLEGAL, PASS or PLAYED
+     * @param playerIdx index of the player who made the move
+     * @param hand hand put on the table, null unless type is PLAYED
+     */
+    public MoveResult(int type, int playerIdx, Hand hand) {
+        this.type = type;
+        this.playerIdx = playerIdx;
+        this.hand = hand;
+    }
+
+    /**
+     * Returns the type of the result
+     * @return ILLEGAL, PASS or PLAYED
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the index of the player who made the move
+     * @return player index
+     */
+    public int getPlayerIdx() {
+        return playerIdx;
+    }
+
+    /**
+     * Returns the hand put on the table
+     * @return hand, or null unless the type is PLAYED
+     */
+    public Hand getHand() {
+        return hand;
+    }
+
+    /**
+     * Returns the compact form of a legal move, as sent to the clients by the
+     * server: the HandClassifier category of the hand followed by the CardSet
+     * indices of its cards
+     * @return compact form, or null for a pass
+     */
+    public int[] toCompactForm() {
+        if (hand == null) {
+            return null;
+        }
+        int[] move = new int[hand.size() + 1];
+        move[0] = HandClassifier.category(hand.getKey() & 511);
+        for (int i = 0; i < hand.size(); i++) {
+            move[i + 1] = CardSet.indexOf(hand.getCard(i));
+        }
+        return move;
+    }
+
+    /**
+     * Check if the move was accepted
+     * @return true if the move was a pass or a played hand, false if it was illegal
+     */
+    public boolean isLegal() {
+        return type != ILLEGAL;
+    }
+}
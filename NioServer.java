@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non-blocking TCP transport for CardGameMessages
+ * The calling thread accepts connections, which are spread round-robin over a
+ * small fixed set of event loops; each loop runs one Selector and does all
+ * reading, frame decoding and writing for its connections
+ * @author Yaw Jalik
+ */
+public class NioServer {
+    /**
+     * Default bound of each connection's outbound queue, in frames
+     */
+    public static final int DEFAULT_MAX_QUEUED_FRAMES = 256;
+
+    private final ConnectionHandler handler;
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running = false;
+    private volatile int maxQueuedFrames = DEFAULT_MAX_QUEUED_FRAMES;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+    private volatile int maxAcceptRate = Integer.MAX_VALUE;
+
+    /**
+     * Constructor for a server
+     * @param handler receiver of connection events
+     * @param numOfLoops number of event-loop threads
+     */
+    public NioServer(ConnectionHandler handler, int numOfLoops) {
+        this.handler = handler;
+        this.loops = new EventLoop[numOfLoops];
+    }
+
+    /**
+     * Returns the default number of event loops: the number of processors, at most 4
+     * @return default number of event loops
+     */
+    public static int defaultNumOfLoops() {
+        return Math.min(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sets the bound and overflow policy of the outbound queues of the
+     * connections accepted from now on
+     * @param maxQueuedFrames most frames waiting to be written to a client
+     * @param overflowPolicy what to do when a client lets its queue fill up
+     */
+    public void setOutboundLimit(int maxQueuedFrames, OverflowPolicy overflowPolicy) {
+        if (maxQueuedFrames <= 0) {
+            throw new IllegalArgumentException("maxQueuedFrames must be positive");
+        }
+        this.maxQueuedFrames = maxQueuedFrames;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Limits how many connections are accepted per second, with bursts of up
+     * to one second's worth; connections beyond that wait in the listen
+     * backlog, where the kernel holds them, or are refused by it once the
+     * backlog is full
+     * @param maxAcceptRate most connections accepted per second
+     */
+    public void setMaxAcceptRate(int maxAcceptRate) {
+        if (maxAcceptRate <= 0) {
+            throw new IllegalArgumentException("maxAcceptRate must be positive");
+        }
+        this.maxAcceptRate = maxAcceptRate;
+    }
+
+    /**
+     * Binds the server socket and starts the event loops
+     * @param port port to listen on
+     * @return the bound local port
+     * @throws IOException if the port cannot be bound
+     */
+    public int bind(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+            Thread t = new Thread(loops[i], "event-loop-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        running = true;
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts connections on the calling thread until the server is stopped
+     * @throws IOException if accepting fails
+     */
+    public void acceptLoop() throws IOException {
+        // Token bucket: one token per accepted connection
+        double tokens = maxAcceptRate;
+        long refilled = System.nanoTime();
+        while (running) {
+            int rate = maxAcceptRate;
+            if (rate != Integer.MAX_VALUE) {
+                long now = System.nanoTime();
+                tokens = Math.min(rate, tokens + (now - refilled) * rate / 1e9);
+                refilled = now;
+                if (tokens < 1) {
+                    LockSupport.parkNanos((long) ((1 - tokens) * 1e9 / rate));
+                    continue;
+                }
+                tokens--;
+            }
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].register(channel);
+        }
+    }
+
+    /**
+     * Stops accepting connections
+     * @throws IOException if the server socket cannot be closed
+     */
+    public void stop() throws IOException {
+        running = false;
+        serverChannel.close();
+    }
+
+    /**
+     * One selector thread and the connections it owns
+     * Other threads hand it work through its task queue
+     * @author Yaw Jalik
+     */
+    class EventLoop implements Runnable, Executor {
+        private final int id;
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        EventLoop(int id) throws IOException {
+            this.id = id;
+            this.selector = Selector.open();
+        }
+
+        /**
+         * Runs a task on this loop's thread
+         * @param task task to be run
+         */
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                Connection connection = new Connection(channel, this, maxQueuedFrames, overflowPolicy);
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    connection.setKey(key);
+                } catch (IOException ex) {
+                    connection.closeNow();
+                    return;
+                }
+                handler.connected(connection);
+            });
+        }
+
+        void scheduleFlush(Connection connection) {
+            execute(() -> flush(connection));
+        }
+
+        void disconnected(Connection connection) {
+            handler.disconnected(connection);
+        }
+
+        private void flush(Connection connection) {
+            if (!connection.isOpen()) {
+                return;
+            }
+            try {
+                connection.flush();
+            } catch (IOException ex) {
+                connection.closeNow();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read(handler);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (IOException ex) {
+                            connection.closeNow();
+                        }
+                    }
+                } catch (Exception ex) {
+                    // keep the loop alive; a failing handler must not stop the other connections
+                    ex.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "event-loop-" + id;
+        }
+    }
+}
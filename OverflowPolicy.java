@@ -0,0 +1,23 @@
+/**
+ * What a Connection does when a frame is sent while its outbound queue is full,
+ * i.e. when the client reads slower than the server writes to it
+ * Frames already handed to the socket are never touched
+ * @author Yaw Jalik
+ */
+public enum OverflowPolicy {
+    /**
+     * Close the connection
+     */
+    DISCONNECT,
+    /**
+     * Drop chat (MSG) frames, the new one or the oldest queued one, and only
+     * close the connection if the queue holds nothing but game frames
+     */
+    DROP_CHAT,
+    /**
+     * Like DROP_CHAT, but first replace a queued frame that the new one
+     * supersedes (such as a repeated READY of the same player) instead of
+     * queueing both
+     */
+    COALESCE
+}
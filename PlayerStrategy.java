@@ -0,0 +1,22 @@
+import java.util.SplittableRandom;
+
+/**
+ * A computer player for simulated BigTwo games
+ * Works on CardSet bit masks so that no objects are needed per move
+ * Instances are used by one thread at a time, so they may keep scratch state
+ * @author Yaw Jalik
+ */
+public interface PlayerStrategy {
+    /**
+     * Chooses a move; must be one of the moves LegalMoveGenerator would list
+     * @param hand CardSet bit mask of the cards held
+     * @param tableKey strength key of the hand to beat, or HandClassifier.INVALID to lead
+     * @param required cards that the move must contain
+     * @param canPass whether passing is allowed
+     * @param cardsLeft number of cards held by each player, indexed by seat
+     * @param random random number generator of the current game
+     * @return CardSet bit mask of the cards to play, or LegalMoveGenerator.PASS
+     */
+    long chooseMove(long hand, int tableKey, long required, boolean canPass, int[] cardsLeft,
+                    SplittableRandom random);
+}
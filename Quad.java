@@ -19,31 +19,8 @@ public class Quad extends Hand {
      */
     @Override
     public boolean isValid() {
-        if (this.size() != 5) {
-            return false;
-        }
-
-        this.sort();
-
-        int rank = getCard(0).rank;
-
-        if (rank != getCard(1).rank) {
-            rank = getCard(1).rank;
-            for (int i = 2; i < 5; i++) {
-                if (getCard(i).rank != rank) {
-                    return false;
-                }
-            }
-        }
-        else {
-            for (int i = 2; i < 4; i++) {
-                if (getCard(i).rank != rank) {
-                    return false;
-                }
-            }
-        }
-
-        return true;
+        return this.size() == 5
+                && HandClassifier.category(HandClassifier.classify(getCardSet())) == HandClassifier.QUAD;
     }
 
     /**
@@ -55,41 +32,4 @@ public class Quad extends Hand {
         return "Quad";
     }
 
-    /**
-     * Override topCard definition: get the highest of the quad cards
-     * @return highest of the quad
-     */
-    @Override
-    public Card getTopCard() {
-        Card topCard;
-        if (this.getCard(1).rank == this.getCard(2).rank) {
-            topCard = this.getCard(1);
-        }
-        else {
-            topCard = this.getCard(0);
-        }
-
-        return topCard;
-    }
-
-    /**
-     * Overriding default beats method
-     * If hand is a StraightFlush, this hand loses
-     * Else if hand is a Quad, use default beats method
-     * Else, it wins
-     * @param hand the hand to be checked
-     * @return true if this beats the hand, false otherwise
-     */
-    @Override
-    public boolean beats(Hand hand) {
-        if (hand.getType().equals("StraightFlush")) {
-            return false;
-        }
-        else if (hand.getType().equals("Quad")) {
-            return super.beats(hand);
-        }
-        else {
-            return true;
-        }
-    }
 }
@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accumulates the results of replayed games
+ * Games that replay exactly as they were journaled feed a SimulationStats,
+ * so the statistics of real games can be rebuilt; games that diverge are
+ * counted, and the first few are described
+ * Each replay task fills its own instance without locking, and the instances
+ * are merged when the tasks are joined
+ * @author Yaw Jalik
+ */
+public class ReplayStats {
+    /**
+     * Most divergences described; the others are only counted
+     */
+    public static final int MAX_DESCRIBED_DIVERGENCES = 100;
+
+    private final SimulationStats gameStats;
+    private long replayed;
+    private long abandoned;
+    private long skipped;
+    private long diverged;
+    private final List<String> divergences = new ArrayList<>();
+
+    /**
+     * Constructor for empty statistics
+     * @param numOfPlayers number of players per game
+     */
+    public ReplayStats(int numOfPlayers) {
+        gameStats = new SimulationStats(numOfPlayers);
+    }
+
+    /**
+     * Records a game that replayed as journaled
+     * @param ended true if someone won, false if the game was abandoned
+     */
+    void recordReplayed(boolean ended) {
+        replayed++;
+        if (!ended) {
+            abandoned++;
+        }
+    }
+
+    /**
+     * Records a game that could not be replayed, such as one dealt with an
+     * unknown deal version
+     */
+    void recordSkipped() {
+        skipped++;
+    }
+
+    /**
+     * Records a game whose replay did not match the journal
+     * @param description what did not match, and where
+     */
+    void recordDivergence(String description) {
+        diverged++;
+        if (divergences.size() < MAX_DESCRIBED_DIVERGENCES) {
+            divergences.add(description);
+        }
+    }
+
+    /**
+     * Returns the statistics of the games that replayed as journaled
+     * @return game statistics
+     */
+    public SimulationStats getGameStats() {
+        return gameStats;
+    }
+
+    /**
+     * Adds the results of another accumulator to this one
+     * @param other statistics to be merged
+     * @return this
+     */
+    public ReplayStats merge(ReplayStats other) {
+        gameStats.merge(other.gameStats);
+        replayed += other.replayed;
+        abandoned += other.abandoned;
+        skipped += other.skipped;
+        diverged += other.diverged;
+        for (String description : other.divergences) {
+            if (divergences.size() == MAX_DESCRIBED_DIVERGENCES) {
+                break;
+            }
+            divergences.add(description);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of games that replayed as journaled, abandoned ones included
+     * @return number of replayed games
+     */
+    public long getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * Returns the number of replayed games that were abandoned before anyone won
+     * @return number of abandoned games
+     */
+    public long getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Returns the number of games that could not be replayed
+     * @return number of skipped games
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Returns the number of games whose replay did not match the journal
+     * @return number of diverged games
+     */
+    public long getDiverged() {
+        return diverged;
+    }
+
+    /**
+     * Returns the descriptions of the first divergences
+     * @return up to MAX_DESCRIBED_DIVERGENCES descriptions
+     */
+    public List<String> getDivergences() {
+        return divergences;
+    }
+
+    /**
+     * Returns a summary of the statistics
+     * @return summary
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Replayed: ").append(replayed).append(" (").append(abandoned).append(" abandoned), skipped: ")
+                .append(skipped).append(", diverged: ").append(diverged).append('\n');
+        for (String description : divergences) {
+            sb.append("  ").append(description).append('\n');
+        }
+        sb.append(gameStats);
+        return sb.toString();
+    }
+}
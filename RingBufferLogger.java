@@ -0,0 +1,192 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger: any thread can log without locking or blocking, and one
+ * background writer thread hands the lines to the subscribers
+ * Lines go through a fixed-size lock-free ring buffer (a bounded multi-producer
+ * queue with one sequence number per slot); when the writer falls so far
+ * behind that the ring is full, new lines are dropped and counted rather than
+ * making the caller wait
+ * @author Yaw Jalik
+ */
+public class RingBufferLogger {
+    /**
+     * Default number of slots of the ring, a power of two
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int mask;
+    private final String[] messages;
+    private final long[] times;
+    // A slot can be written when its sequence equals the claiming position,
+    // and read when it equals that position + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final CopyOnWriteArrayList<LogSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread writer;
+    // Only touched by the writer thread
+    private long head = 0;
+    private long droppedReported = 0;
+    private volatile boolean writerWaiting = false;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for a logger with the default capacity
+     * Starts the writer thread
+     */
+    public RingBufferLogger() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for a logger
+     * Starts the writer thread
+     * @param capacity number of lines the ring holds, rounded up to a power of two
+     */
+    public RingBufferLogger(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        messages = new String[size];
+        times = new long[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        writer = new Thread(this::drainLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Adds a subscriber; it receives the lines logged from now on
+     * @param subscriber subscriber to be added
+     */
+    public void subscribe(LogSubscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Logs a line; never blocks
+     * @param message line to be logged
+     */
+    public void log(String message) {
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long diff = sequences.get(slot) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // the writer has not freed this slot yet: the ring is full
+                dropped.incrementAndGet();
+                return;
+            } else {
+                pos = tail.get();
+            }
+        }
+        int slot = (int) pos & mask;
+        messages[slot] = message;
+        times[slot] = System.currentTimeMillis();
+        sequences.set(slot, pos + 1);
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Returns the number of lines dropped because the ring was full
+     * @return number of dropped lines
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes out the lines still in the ring, stops the writer and closes
+     * the subscribers
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drain() == 0) {
+                writerWaiting = true;
+                // a line logged just before the flag was set would not unpark us
+                if (drain() == 0 && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerWaiting = false;
+            }
+        }
+        drain();
+        for (LogSubscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    /**
+     * Hands every published line to the subscribers, then flushes them
+     * @return number of lines handed out
+     */
+    private int drain() {
+        int count = 0;
+        // at most one ring's worth, so the subscribers get flushed under load too
+        while (count <= mask) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            String message = messages[slot];
+            long time = times[slot];
+            messages[slot] = null;
+            sequences.set(slot, head + mask + 1);
+            head++;
+            count++;
+            publish(time, message);
+        }
+        long droppedNow = dropped.get();
+        if (droppedNow != droppedReported) {
+            publish(System.currentTimeMillis(), (droppedNow - droppedReported) + " log lines dropped: logger overloaded");
+            droppedReported = droppedNow;
+            count++;
+        }
+        if (count > 0) {
+            for (LogSubscriber subscriber : subscribers) {
+                subscriber.flush();
+            }
+        }
+        return count;
+    }
+
+    private void publish(long time, String message) {
+        for (LogSubscriber subscriber : subscribers) {
+            try {
+                subscriber.log(time, message);
+            } catch (RuntimeException ex) {
+                // a broken subscriber must not stop the others
+                ex.printStackTrace();
+            }
+        }
+    }
+}
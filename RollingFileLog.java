@@ -0,0 +1,135 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Log subscriber writing to a file that rolls over when it gets too big
+ * The full file is renamed to name.1 (name.1 to name.2, and so on) and a new
+ * file is started; the oldest file is deleted once there are maxFiles of them
+ * @author Yaw Jalik
+ */
+public class RollingFileLog implements LogSubscriber {
+    /**
+     * Default size a file may reach before it is rolled over
+     */
+    public static final long DEFAULT_MAX_FILE_SIZE = 10L * 1024 * 1024;
+
+    /**
+     * Default number of files kept, the current one included
+     */
+    public static final int DEFAULT_MAX_FILES = 5;
+
+    private final File file;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS ");
+    private final Date date = new Date();
+    private Writer out;
+    private long fileSize;
+
+    /**
+     * Constructor for a rolling log with the default limits
+     * @param path path of the current log file
+     * @throws IOException if the file cannot be opened
+     */
+    public RollingFileLog(String path) throws IOException {
+        this(path, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * Constructor for a rolling log
+     * Lines are appended to an existing file
+     * @param path path of the current log file
+     * @param maxFileSize size a file may reach before it is rolled over
+     * @param maxFiles number of files kept, the current one included
+     * @throws IOException if the file cannot be opened
+     */
+    public RollingFileLog(String path, long maxFileSize, int maxFiles) throws IOException {
+        this.file = new File(path);
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = Math.max(1, maxFiles);
+        open();
+    }
+
+    @Override
+    public void log(long timeMillis, String message) {
+        if (out == null) {
+            return;
+        }
+        date.setTime(timeMillis);
+        String line = dateFormat.format(date) + message + System.lineSeparator();
+        try {
+            out.write(line);
+            // lines are almost always ASCII, so the length is close enough
+            fileSize += line.length();
+            if (fileSize >= maxFileSize) {
+                roll();
+            }
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException ex) {
+            failed(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException ex) {
+            // nothing left to write to
+        }
+        out = null;
+    }
+
+    private void open() throws IOException {
+        fileSize = file.length();
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        out = null;
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File older = new File(file.getPath() + "." + i);
+            File source = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+            if (source.exists()) {
+                if (older.exists() && !older.delete()) {
+                    throw new IOException("Cannot delete " + older);
+                }
+                if (!source.renameTo(older)) {
+                    throw new IOException("Cannot rename " + source + " to " + older);
+                }
+            }
+        }
+        if (maxFiles == 1 && !file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+        open();
+    }
+
+    private void failed(IOException ex) {
+        // the log itself cannot be used to report this
+        System.err.println("Logging to " + file + " stopped: " + ex);
+        close();
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks one at a time, in submission order, on a shared thread pool
+ * Works like an actor mailbox: state touched only by the tasks of one
+ * SerialExecutor needs no locking, while different SerialExecutors run in
+ * parallel on the pool
+ * @author Yaw Jalik
+ */
+public class SerialExecutor implements Executor {
+    /**
+     * Tasks run per turn on the pool before yielding to other executors
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private final Executor pool;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Runnable drain = this::drain;
+
+    /**
+     * Constructor for a serial executor
+     * @param pool the shared pool the tasks run on
+     */
+    public SerialExecutor(Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Queues a task; it runs after every task queued before it
+     * @param task task to be run
+     */
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            pool.execute(drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            for (int i = 0; i < BATCH_SIZE && (task = tasks.poll()) != null; i++) {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    // a failing task must not stop the ones queued after it
+                    ex.printStackTrace();
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            // tasks added while draining, or left over from the batch
+            schedule();
+        }
+    }
+}
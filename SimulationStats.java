@@ -0,0 +1,144 @@
+/**
+ * Accumulates the results of simulated BigTwo games
+ * Each simulation task fills its own instance without locking, and the
+ * instances are merged when the tasks are joined
+ * @author Yaw Jalik
+ */
+public class SimulationStats {
+    private final int numOfPlayers;
+    private long games;
+    private long moves;
+    private long passes;
+    private final long[] wins;
+    private final long[] cardsLeft;
+    private final long[] handTypeCounts = new long[8];
+
+    /**
+     * Constructor for empty statistics
+     * @param numOfPlayers number of players per game
+     */
+    public SimulationStats(int numOfPlayers) {
+        this.numOfPlayers = numOfPlayers;
+        wins = new long[numOfPlayers];
+        cardsLeft = new long[numOfPlayers];
+    }
+
+    /**
+     * Records a hand put on the table
+     * @param key strength key of the hand
+     */
+    void recordHand(int key) {
+        moves++;
+        handTypeCounts[HandClassifier.category(key & 511)]++;
+    }
+
+    /**
+     * Records a pass
+     */
+    void recordPass() {
+        moves++;
+        passes++;
+    }
+
+    /**
+     * Records the end of a game
+     * @param winner seat of the winner
+     * @param hands CardSet bit masks of the cards left with each player
+     */
+    void recordGame(int winner, long[] hands) {
+        games++;
+        wins[winner]++;
+        for (int i = 0; i < numOfPlayers; i++) {
+            cardsLeft[i] += CardSet.size(hands[i]);
+        }
+    }
+
+    /**
+     * Adds the results of another accumulator to this one
+     * @param other statistics to be merged
+     * @return this
+     */
+    public SimulationStats merge(SimulationStats other) {
+        games += other.games;
+        moves += other.moves;
+        passes += other.passes;
+        for (int i = 0; i < numOfPlayers; i++) {
+            wins[i] += other.wins[i];
+            cardsLeft[i] += other.cardsLeft[i];
+        }
+        for (int i = 0; i < handTypeCounts.length; i++) {
+            handTypeCounts[i] += other.handTypeCounts[i];
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of games played
+     * @return number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of moves made, passes included
+     * @return number of moves
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Returns the number of passes
+     * @return number of passes
+     */
+    public long getPasses() {
+        return passes;
+    }
+
+    /**
+     * Returns the number of games won by a seat
+     * @param seat seat index
+     * @return number of wins
+     */
+    public long getWins(int seat) {
+        return wins[seat];
+    }
+
+    /**
+     * Returns the total number of cards left with a seat at the end of its games
+     * @param seat seat index
+     * @return total cards left
+     */
+    public long getCardsLeft(int seat) {
+        return cardsLeft[seat];
+    }
+
+    /**
+     * Returns the number of hands of a category that were played
+     * @param category hand category, see HandClassifier
+     * @return number of hands
+     */
+    public long getHandTypeCount(int category) {
+        return handTypeCounts[category];
+    }
+
+    /**
+     * Returns a summary of the statistics
+     * @return summary
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Games: ").append(games).append(", moves: ").append(moves)
+                .append(", passes: ").append(passes).append('\n');
+        for (int i = 0; i < numOfPlayers; i++) {
+            sb.append("Seat ").append(i).append(": ").append(wins[i]).append(" wins, ")
+                    .append(games == 0 ? 0 : (double) cardsLeft[i] / games).append(" cards left on average\n");
+        }
+        for (int i = 0; i < handTypeCounts.length; i++) {
+            sb.append(HandClassifier.typeOf(i)).append(": ").append(handTypeCounts[i]).append('\n');
+        }
+        return sb.toString();
+    }
+}
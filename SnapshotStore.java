@@ -0,0 +1,193 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps the latest TableSnapshot of every table and writes them all to one
+ * file, so a restarted server can restore its tables (see load)
+ * The tables hand in snapshots without waiting; a background writer thread
+ * writes the file at most once per WRITE_INTERVAL, and only when a snapshot
+ * has changed. The file is written to a temporary file, forced to the disk and
+ * renamed over the old one, so a crash leaves either the old or the new file
+ * <p>
+ * File format: the 4 bytes MAGIC, 1 byte VERSION, varint count, then the
+ * snapshots back to back (see TableSnapshot; version 1 is the same without
+ * session tokens, and is still read)
+ * @author Yaw Jalik
+ */
+public class SnapshotStore {
+    /**
+     * First bytes of the snapshot file
+     */
+    public static final int MAGIC = 0x4232534e; // "B2SN"
+
+    /**
+     * Version of the file format
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Name of the snapshot file in its directory
+     */
+    public static final String FILE_NAME = "tables.snap";
+
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final File file;
+    private final File tempFile;
+    private final ConcurrentHashMap<Integer, TableSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicBoolean changed = new AtomicBoolean(false);
+    private final AtomicLong written = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor for a store; starts the writer thread
+     * @param directory directory of the snapshot file, created if needed
+     * @throws IOException if the directory cannot be created
+     */
+    public SnapshotStore(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        file = new File(directory, FILE_NAME);
+        tempFile = new File(directory, FILE_NAME + ".tmp");
+        writer = new Thread(this::writeLoop, "snapshot-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Reads the snapshots written by an earlier run
+     * @return snapshots of the tables, empty if there is no snapshot file
+     * @throws IOException if the file cannot be read or is invalid
+     */
+    public List<TableSnapshot> load() throws IOException {
+        List<TableSnapshot> tables = new ArrayList<>();
+        if (!file.isFile()) {
+            return tables;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new StreamCorruptedException(file + " is not a snapshot file");
+            }
+            int version = in.get() & 0xFF;
+            if (version < 1 || version > VERSION) {
+                throw new StreamCorruptedException(file + " has unsupported version " + version);
+            }
+            int count = MessageCodec.readCount(in);
+            for (int i = 0; i < count; i++) {
+                tables.add(TableSnapshot.read(in, version));
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new StreamCorruptedException(file + " is truncated");
+        }
+        return tables;
+    }
+
+    /**
+     * Replaces the snapshot of a table; never blocks
+     * @param snapshot the latest snapshot of the table
+     */
+    public void put(TableSnapshot snapshot) {
+        snapshots.put(snapshot.getTableID(), snapshot);
+        changed.set(true);
+    }
+
+    /**
+     * Forgets a table that has been closed; never blocks
+     * @param tableID ID of the table
+     */
+    public void remove(int tableID) {
+        if (snapshots.remove(tableID) != null) {
+            changed.set(true);
+        }
+    }
+
+    /**
+     * Returns the number of times the snapshot file has been written
+     * @return number of writes
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Writes out the latest snapshots and stops the writer
+     */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, WRITE_INTERVAL_NANOS);
+            write();
+        }
+        write();
+    }
+
+    private void write() {
+        if (!changed.getAndSet(false)) {
+            return;
+        }
+        // a snapshot replaced while this runs sets the flag again and is
+        // written next time
+        List<TableSnapshot> tables = new ArrayList<>(snapshots.values());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + tables.size() * 128);
+        out.write(MAGIC >>> 24);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC);
+        out.write(VERSION);
+        MessageCodec.writeVarint(out, tables.size());
+        for (TableSnapshot snapshot : tables) {
+            snapshot.writeTo(out);
+        }
+
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException ex) {
+            System.err.println("Cannot write " + tempFile + ": " + ex);
+            changed.set(true);
+            return;
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            written.incrementAndGet();
+        } catch (IOException ex) {
+            System.err.println("Cannot replace " + file + ": " + ex);
+            changed.set(true);
+        }
+    }
+}
@@ -19,21 +19,8 @@ public class StraightFlush extends Hand {
      */
     @Override
     public boolean isValid() {
-        if (this.size() != 5) {
-            return false;
-        }
-
-        // Check for consecutive ranks and suits
-        int suit = getCard(0).suit;
-        for (int i = 0; i < 4; i++) {
-            int previousRank = getCard(i).rank < 2 ? getCard(i).rank + 13 : getCard(i).rank;
-            int currentRank = getCard(i+1).rank < 2 ? getCard(i+1).rank + 13 : getCard(i+1).rank;
-            if (previousRank != currentRank - 1 || suit != getCard(i).suit) {
-                return false;
-            }
-        }
-
-        return true;
+        return this.size() == 5
+                && HandClassifier.category(HandClassifier.classify(getCardSet())) == HandClassifier.STRAIGHT_FLUSH;
     }
 
     /**
@@ -45,20 +32,4 @@ public class StraightFlush extends Hand {
         return "StraightFlush";
     }
 
-    /**
-     * Overriding default beats method
-     * If hand is a StraightFlush, use default beats method
-     * Else, it wins
-     * @param hand the hand to be checked
-     * @return true if this beats the hand, false otherwise
-     */
-    @Override
-    public boolean beats(Hand hand) {
-        if (hand.getType().equals("StraightFlush")) {
-            return super.beats(hand);
-        }
-        else {
-            return true;
-        }
-    }
 }
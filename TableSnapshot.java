@@ -0,0 +1,295 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Immutable copy of the state of one GameTable, for restoring the table after
+ * a restart of the server: who sits where, the ready flags, and the game in
+ * progress (every player's cards, the hands on the table, the active seat,
+ * the deal and the record of the moves so far)
+ * Capturing only copies a few arrays of primitives on the table's executor,
+ * so the table hardly pauses; encoding and writing are left to a
+ * SnapshotStore on another thread
+ * <p>
+ * Snapshot format:
+ * <pre>
+ * tableID      varint
+ * seats        1 byte count, then per seat: 1 byte flags (OCCUPIED, READY),
+ *              name (as in MessageCodec), 8 bytes session token (from version 2 of SnapshotStore)
+ * game         1 byte, 1 if a game is running, 0 otherwise; if running:
+ *   seed         8 bytes
+ *   dealVersion  varint
+ *   activeSeat   1 byte
+ *   hands        8 bytes per seat, CardSet bit mask
+ *   table        varint count, then per hand: 1 byte seat, 8 bytes CardSet bit mask
+ *   record       varint length, then the record (see GameRecord); 0 if not journaled
+ * </pre>
+ * @author Yaw Jalik
+ */
+public class TableSnapshot {
+    private static final int OCCUPIED = 1;
+    private static final int READY = 2;
+
+    private final int tableID;
+    private final byte[] seatFlags;
+    private final String[] names;
+    private final long[] tokens;
+    private final boolean gameRunning;
+    private final long seed;
+    private final int dealVersion;
+    private final int activeSeat;
+    private final long[] hands;
+    private final int[] handPlayers;
+    private final long[] handCards;
+    private final byte[] record;
+
+    private TableSnapshot(int tableID, byte[] seatFlags, String[] names, long[] tokens, boolean gameRunning,
+            long seed, int dealVersion, int activeSeat, long[] hands, int[] handPlayers, long[] handCards,
+            byte[] record) {
+        this.tableID = tableID;
+        this.seatFlags = seatFlags;
+        this.names = names;
+        this.tokens = tokens;
+        this.gameRunning = gameRunning;
+        this.seed = seed;
+        this.dealVersion = dealVersion;
+        this.activeSeat = activeSeat;
+        this.hands = hands;
+        this.handPlayers = handPlayers;
+        this.handCards = handCards;
+        this.record = record;
+    }
+
+    /**
+     * Captures the state of a table; must run on the table's executor
+     * @param table the table
+     * @return snapshot of the table
+     */
+    public static TableSnapshot capture(GameTable table) {
+        int numOfSeats = table.getMaxNumOfPlayers();
+        byte[] seatFlags = new byte[numOfSeats];
+        String[] names = new String[numOfSeats];
+        long[] tokens = new long[numOfSeats];
+        for (int i = 0; i < numOfSeats; i++) {
+            ConnectionContext context = table.getContext(i);
+            if (context == null) {
+                context = table.getHeldContext(i);
+            }
+            if (context != null) {
+                seatFlags[i] = (byte) (context.isReady() ? OCCUPIED | READY : OCCUPIED);
+                names[i] = context.getName();
+                tokens[i] = context.getToken();
+            }
+        }
+
+        if (!table.isGameRunning()) {
+            return new TableSnapshot(table.getID(), seatFlags, names, tokens, false, 0, 0, -1,
+                    null, null, null, null);
+        }
+        BigTwoEngine engine = table.getEngine();
+        long[] hands = new long[numOfSeats];
+        for (int i = 0; i < numOfSeats; i++) {
+            hands[i] = engine.getPlayerList().get(i).getCardSet();
+        }
+        ArrayList<Hand> handsOnTable = engine.getHandsOnTable();
+        int[] handPlayers = new int[handsOnTable.size()];
+        long[] handCards = new long[handsOnTable.size()];
+        for (int i = 0; i < handCards.length; i++) {
+            Hand hand = handsOnTable.get(i);
+            handPlayers[i] = engine.getPlayerList().indexOf(hand.getPlayer());
+            handCards[i] = hand.getCardSet();
+        }
+        GameRecord gameRecord = table.getRecord();
+        return new TableSnapshot(table.getID(), seatFlags, names, tokens, true, table.getSeed(), Deck.DEAL_VERSION,
+                engine.getActivePlayer(), hands, handPlayers, handCards,
+                gameRecord == null ? null : gameRecord.toBytes());
+    }
+
+    /**
+     * Returns the table ID
+     * @return table ID
+     */
+    public int getTableID() {
+        return tableID;
+    }
+
+    /**
+     * Returns the number of seats
+     * @return number of seats
+     */
+    public int getNumOfSeats() {
+        return seatFlags.length;
+    }
+
+    /**
+     * Check if a seat was taken
+     * @param seat seat index
+     * @return true if taken, false otherwise
+     */
+    public boolean isOccupied(int seat) {
+        return (seatFlags[seat] & OCCUPIED) != 0;
+    }
+
+    /**
+     * Check if the player at a seat was ready for the next game
+     * @param seat seat index
+     * @return true if ready, false otherwise
+     */
+    public boolean isReady(int seat) {
+        return (seatFlags[seat] & READY) != 0;
+    }
+
+    /**
+     * Returns the name of the player at a seat
+     * @param seat seat index
+     * @return name, or null if the seat was free or the player had no name yet
+     */
+    public String getName(int seat) {
+        return names[seat];
+    }
+
+    /**
+     * Returns the session token of the player at a seat
+     * @param seat seat index
+     * @return token, or 0 if the player had none
+     */
+    public long getToken(int seat) {
+        return tokens[seat];
+    }
+
+    /**
+     * Check if a game was running
+     * @return true if running, false otherwise
+     */
+    public boolean isGameRunning() {
+        return gameRunning;
+    }
+
+    /**
+     * Returns the seed of the deal of the running game
+     * @return seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the deal version of the running game
+     * @return deal version, see Deck.DEAL_VERSION
+     */
+    public int getDealVersion() {
+        return dealVersion;
+    }
+
+    /**
+     * Restores the running game on an engine (see BigTwoEngine.restore)
+     * @param engine engine of the restored table
+     */
+    public void restoreGame(BigTwoEngine engine) {
+        engine.restore(hands, handPlayers, handCards, activeSeat);
+    }
+
+    /**
+     * Decodes the record of the running game
+     * @return the record, or null if the game was not journaled
+     * @throws IOException if the record is invalid
+     */
+    public GameRecord getRecord() throws IOException {
+        return record == null ? null : GameRecord.read(ByteBuffer.wrap(record));
+    }
+
+    /**
+     * Encodes the snapshot
+     * @param out stream the snapshot is written to
+     */
+    public void writeTo(ByteArrayOutputStream out) {
+        MessageCodec.writeVarint(out, tableID);
+        out.write(seatFlags.length);
+        for (int i = 0; i < seatFlags.length; i++) {
+            out.write(seatFlags[i]);
+            MessageCodec.writeString(out, names[i]);
+            MessageCodec.writeLong(out, tokens[i]);
+        }
+        out.write(gameRunning ? 1 : 0);
+        if (!gameRunning) {
+            return;
+        }
+        MessageCodec.writeLong(out, seed);
+        MessageCodec.writeVarint(out, dealVersion);
+        out.write(activeSeat);
+        for (long hand : hands) {
+            MessageCodec.writeLong(out, hand);
+        }
+        MessageCodec.writeVarint(out, handCards.length);
+        for (int i = 0; i < handCards.length; i++) {
+            out.write(handPlayers[i]);
+            MessageCodec.writeLong(out, handCards[i]);
+        }
+        if (record == null) {
+            MessageCodec.writeVarint(out, 0);
+        } else {
+            MessageCodec.writeVarint(out, record.length);
+            out.write(record, 0, record.length);
+        }
+    }
+
+    /**
+     * Decodes a snapshot
+     * @param in buffer positioned at the snapshot
+     * @param version version of the SnapshotStore file
+     * @return the decoded snapshot
+     * @throws IOException if the snapshot is invalid
+     */
+    public static TableSnapshot read(ByteBuffer in, int version) throws IOException {
+        int tableID = MessageCodec.readVarint(in);
+        int numOfSeats = in.get() & 0xFF;
+        byte[] seatFlags = new byte[numOfSeats];
+        String[] names = new String[numOfSeats];
+        long[] tokens = new long[numOfSeats];
+        for (int i = 0; i < numOfSeats; i++) {
+            seatFlags[i] = in.get();
+            names[i] = MessageCodec.readString(in);
+            if (version >= 2) {
+                tokens[i] = in.getLong();
+            }
+        }
+        if (in.get() == 0) {
+            return new TableSnapshot(tableID, seatFlags, names, tokens, false, 0, 0, -1, null, null, null, null);
+        }
+
+        long seed = in.getLong();
+        int dealVersion = MessageCodec.readVarint(in);
+        int activeSeat = in.get() & 0xFF;
+        if (activeSeat >= numOfSeats) {
+            throw new StreamCorruptedException("Bad active seat " + activeSeat);
+        }
+        long[] hands = new long[numOfSeats];
+        for (int i = 0; i < numOfSeats; i++) {
+            hands[i] = in.getLong();
+            if ((hands[i] & ~CardSet.FULL_DECK) != 0) {
+                throw new StreamCorruptedException("Bad hand of seat " + i);
+            }
+        }
+        int numOfHands = MessageCodec.readCount(in);
+        int[] handPlayers = new int[numOfHands];
+        long[] handCards = new long[numOfHands];
+        for (int i = 0; i < numOfHands; i++) {
+            handPlayers[i] = in.get() & 0xFF;
+            handCards[i] = in.getLong();
+            if (handPlayers[i] >= numOfSeats
+                    || HandClassifier.classify(handCards[i] & CardSet.FULL_DECK) == HandClassifier.INVALID) {
+                throw new StreamCorruptedException("Bad hand on the table");
+            }
+        }
+        int recordLength = MessageCodec.readCount(in);
+        byte[] record = null;
+        if (recordLength > 0) {
+            record = new byte[recordLength];
+            in.get(record);
+        }
+        return new TableSnapshot(tableID, seatFlags, names, tokens, true, seed, dealVersion, activeSeat,
+                hands, handPlayers, handCards, record);
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regression check for the read path of Connection: frames larger than the
+ * initial read buffer must get through, in both formats, also when small and
+ * large frames alternate so the buffer grows and shrinks back in between
+ * Run from the repository root:
+ * javac -d out *.java test/ConnectionReadCheck.java && java -cp out ConnectionReadCheck
+ * @author Yaw Jalik
+ */
+public class ConnectionReadCheck {
+    private static final int[] SIZES = {8000, 9000, 200000, 100, 9000, 50};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        BlockingQueue<Integer> received = new LinkedBlockingQueue<>();
+        NioServer server = new NioServer(new ConnectionHandler() {
+            @Override
+            public void connected(Connection connection) {
+            }
+
+            @Override
+            public void messageReceived(Connection connection, CardGameMessage message) {
+                received.add(((String) message.getData()).length());
+            }
+
+            @Override
+            public void disconnected(Connection connection) {
+            }
+        }, 1);
+        int port = server.bind(0);
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.acceptLoop();
+            } catch (IOException e) {
+                // Stopped
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        boolean passed = true;
+        try (Socket socket = new Socket("localhost", port)) {
+            MessageStream stream = new MessageStream(socket.getInputStream(), socket.getOutputStream());
+            for (MessageCodec.Format format : MessageCodec.Format.values()) {
+                for (int size : SIZES) {
+                    stream.write(new CardGameMessage(CardGameMessage.MSG, 0, "x".repeat(size)), format);
+                    Integer length = received.poll(5, TimeUnit.SECONDS);
+                    if (length == null || length != size) {
+                        System.out.println("FAIL " + format + " " + size + " bytes: received " + length);
+                        passed = false;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            server.stop();
+        }
+        System.out.println(passed ? "OK" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak check for the stream memory of MessageStream and Connection: sends
+ * many messages from a MessageStream to a NioServer, alternating the wire
+ * formats and sending an unusually large chat every 100000 messages, and
+ * checks that the live heap after a garbage collection stays under a bound
+ * Run from the repository root, with a small heap so growth shows:
+ * javac -d out *.java test/MessageStreamSoakCheck.java && java -Xmx64m -cp out MessageStreamSoakCheck [messages] [max heap MB]
+ * @author Yaw Jalik
+ */
+public class MessageStreamSoakCheck {
+    private static final long DEFAULT_MESSAGES = 10_000_000;
+    private static final long DEFAULT_MAX_HEAP_MB = 8;
+    // Every this many messages, one is a large chat
+    private static final long LARGE_EVERY = 100_000;
+    private static final int LARGE_SIZE = 200 * 1024;
+    // Number of heap measurements over the run
+    private static final int CHECKPOINTS = 10;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long messages = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_MESSAGES;
+        long maxHeap = (args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_MAX_HEAP_MB) * 1024 * 1024;
+        long checkpoint = Math.max(1, messages / CHECKPOINTS);
+
+        AtomicLong received = new AtomicLong();
+        NioServer server = new NioServer(new ConnectionHandler() {
+            @Override
+            public void connected(Connection connection) {
+            }
+
+            @Override
+            public void messageReceived(Connection connection, CardGameMessage message) {
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void disconnected(Connection connection) {
+            }
+        }, 1);
+        int port = server.bind(0);
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.acceptLoop();
+            } catch (IOException e) {
+                // Stopped
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        MessageCodec.Format[] formats = MessageCodec.Format.values();
+        CardGameMessage small = new CardGameMessage(CardGameMessage.MSG, 0, "Hello");
+        CardGameMessage large = new CardGameMessage(CardGameMessage.MSG, 0, "x".repeat(LARGE_SIZE));
+        long maxUsed = 0;
+        try (Socket socket = new Socket("localhost", port)) {
+            MessageStream stream = new MessageStream(socket.getInputStream(), socket.getOutputStream());
+            for (long sent = 1; sent <= messages; sent++) {
+                CardGameMessage message = sent % LARGE_EVERY == 0 ? large : small;
+                stream.write(message, formats[(int) (sent % formats.length)]);
+                if (sent % checkpoint == 0 || sent == messages) {
+                    // Measure once the server has caught up
+                    long deadline = System.currentTimeMillis() + 30_000;
+                    while (received.get() < sent) {
+                        if (System.currentTimeMillis() > deadline) {
+                            System.out.println("FAIL: " + received.get() + " of " + sent + " messages received");
+                            System.exit(1);
+                        }
+                        Thread.sleep(1);
+                    }
+                    long used = usedHeap();
+                    maxUsed = Math.max(maxUsed, used);
+                    System.out.printf("%,d messages: %.1f MB live%n", sent, used / 1048576.0);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+        boolean passed = maxUsed <= maxHeap;
+        System.out.printf("Largest live heap %.1f MB, bound %.1f MB%n", maxUsed / 1048576.0, maxHeap / 1048576.0);
+        System.out.println(passed ? "OK" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}